@@ -0,0 +1,166 @@
+package com.springboot.learning.kit.batch;
+
+import com.springboot.learning.kit.exception.RetryableFailures;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects items submitted from many threads and hands them to a handler in batches. A batch is closed once it
+ * holds maxBatchSize items, or maxWait after its first item arrived, whichever comes first.
+ * <p>
+ * Every submitter gets its own future back. If the handler throws for a batch, the batch is split in half and
+ * each half is retried on its own until the failing items are isolated, so a single bad item only fails itself.
+ * Failures caused by the database being unavailable fail the whole batch at once instead, as every half would
+ * only fail the same way and add to the load on a struggling database.
+ *
+ * @param <T> the type of item being batched
+ */
+@Slf4j
+public class MicroBatcher<T> {
+
+    private final String name;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<PendingItem<T>> queue;
+    private final Consumer<List<T>> batchHandler;
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean running;
+
+    public MicroBatcher(String name, int maxBatchSize, Duration maxWait, int queueCapacity,
+                        Consumer<List<T>> batchHandler) {
+        this.name = name;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchHandler = batchHandler;
+    }
+
+    /**
+     * Starts the worker threads that drain the queue. Each worker builds and handles its own batches.
+     *
+     * @param workerThreads the number of batches that can be handled concurrently
+     */
+    public synchronized void start(int workerThreads) {
+        running = true;
+        for (int i = 0; i < workerThreads; i++) {
+            Thread worker = new Thread(this::drainLoop, name + "-batcher-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("Started {} batcher with {} workers, max batch size {}", name, workerThreads, maxBatchSize);
+    }
+
+    /**
+     * Stops the workers and fails anything still waiting in the queue.
+     */
+    public synchronized void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        workers.clear();
+
+        List<PendingItem<T>> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(item -> item.result().completeExceptionally(
+                new IllegalStateException(name + " batcher was stopped before the item was handled")));
+    }
+
+    /**
+     * Queues an item for the next batch. Blocks while the queue is full, which pushes back on the callers.
+     *
+     * @param item the item to queue
+     * @return a future completed once the batch containing the item has been handled, or failed if the batcher
+     * is stopped first
+     */
+    public CompletableFuture<Void> submit(T item) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException(name + " batcher is not running"));
+        }
+
+        PendingItem<T> pendingItem = new PendingItem<>(item, new CompletableFuture<>());
+        try {
+            queue.put(pendingItem);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pendingItem.result().completeExceptionally(e);
+            return pendingItem.result();
+        }
+        // Stopped while the item was being queued, after stop() had already failed whatever was queued, so
+        // nothing else will take it. If a worker or stop() got to it first, they complete it instead
+        if (!running && queue.remove(pendingItem)) {
+            pendingItem.result().completeExceptionally(
+                    new IllegalStateException(name + " batcher was stopped before the item was handled"));
+        }
+        return pendingItem.result();
+    }
+
+    /**
+     * @return the number of items waiting to be batched
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void drainLoop() {
+        while (running) {
+            List<PendingItem<T>> batch = new ArrayList<>(maxBatchSize);
+            try {
+                PendingItem<T> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    // Take whatever is already queued before waiting for more
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingItem<T> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                handle(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(item -> item.result().completeExceptionally(e));
+                return;
+            }
+        }
+    }
+
+    private void handle(List<PendingItem<T>> batch) {
+        try {
+            batchHandler.accept(batch.stream().map(PendingItem::item).toList());
+            batch.forEach(item -> item.result().complete(null));
+        } catch (Exception e) {
+            if (batch.size() == 1 || RetryableFailures.isRetryable(e)) {
+                batch.forEach(item -> item.result().completeExceptionally(e));
+                return;
+            }
+
+            log.warn("{} batch of {} items failed, splitting it to isolate the failing items ~ {}",
+                    name, batch.size(), e.getMessage());
+            int middle = batch.size() / 2;
+            handle(batch.subList(0, middle));
+            handle(batch.subList(middle, batch.size()));
+        }
+    }
+
+    private record PendingItem<T>(T item, CompletableFuture<Void> result) {
+    }
+}
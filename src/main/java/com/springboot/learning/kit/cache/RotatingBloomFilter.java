@@ -0,0 +1,120 @@
+package com.springboot.learning.kit.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter over long keys that only remembers recent keys. It keeps two generations, each sized for
+ * a fixed number of keys: keys go into the current generation and lookups check both, and once the current
+ * generation has taken its share of keys it becomes the previous one and the old previous one is dropped. A key
+ * is therefore remembered until between one and two generations' worth of keys have been added after it, however
+ * long that takes, so quiet periods don't empty the filter.
+ * <p>
+ * Like any Bloom filter it never misses a key it remembers, but may report keys it hasn't seen.
+ */
+public class RotatingBloomFilter {
+
+    private final long keysPerGeneration;
+    private final int bitCount;
+    private final int hashCount;
+    private final int wordCount;
+
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    /**
+     * @param keysPerGeneration the number of keys a generation takes before it's rotated
+     * @param falsePositiveRate the false-positive rate wanted at that number of keys
+     */
+    public RotatingBloomFilter(long keysPerGeneration, double falsePositiveRate) {
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-keysPerGeneration * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.keysPerGeneration = keysPerGeneration;
+        this.bitCount = (int) Math.min(Math.max(bits, 64), Integer.MAX_VALUE - 64);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / keysPerGeneration * ln2));
+        this.wordCount = (bitCount + 63) / 64;
+        this.current = new Generation(new AtomicLongArray(wordCount), new AtomicLong());
+    }
+
+    /**
+     * @param key the key to look up
+     * @return false if the key definitely wasn't added within the window, true if it might have been
+     */
+    public boolean mightContain(long key) {
+        // Rotation sets previous before current, so reading them the other way round can't miss a generation
+        Generation newer = current;
+        Generation older = previous;
+        return contains(newer.bits(), key) || (older != null && contains(older.bits(), key));
+    }
+
+    /**
+     * @param key the key to remember
+     */
+    public void put(long key) {
+        Generation generation = current;
+        if (generation.keys().incrementAndGet() > keysPerGeneration) {
+            generation = rotate(generation);
+        }
+        AtomicLongArray bits = generation.bits();
+        long hash1 = mix(key);
+        long hash2 = mix(key ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (int) Math.floorMod(hash1 + i * hash2, (long) bitCount);
+            long mask = 1L << bit;
+            int word = bit >>> 6;
+            if ((bits.get(word) & mask) == 0) {
+                bits.accumulateAndGet(word, mask, (existing, added) -> existing | added);
+            }
+        }
+    }
+
+    /**
+     * @return the memory taken by both generations, in bytes
+     */
+    public long getMemoryBytes() {
+        return 2L * wordCount * Long.BYTES;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    private boolean contains(AtomicLongArray bits, long key) {
+        long hash1 = mix(key);
+        long hash2 = mix(key ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (int) Math.floorMod(hash1 + i * hash2, (long) bitCount);
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts a new generation once the full one is still the current one; concurrent callers that also found it
+     * full get the generation started by the first of them.
+     */
+    private synchronized Generation rotate(Generation full) {
+        if (current == full) {
+            previous = full;
+            current = new Generation(new AtomicLongArray(wordCount), new AtomicLong(1));
+        }
+        return current;
+    }
+
+    /**
+     * Murmur3 finaliser, spreads sequential keys such as order UUIDs evenly over the bits.
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private record Generation(AtomicLongArray bits, AtomicLong keys) {
+    }
+}
@@ -2,6 +2,7 @@ package com.springboot.learning.kit.config;
 
 import jakarta.jms.ConnectionFactory;
 import org.apache.activemq.ActiveMQConnectionFactory;
+import org.messaginghub.pooled.jms.JmsPoolConnectionFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -25,18 +26,35 @@ public class ActiveMQConfig {
     @Value("${spring.activemq.password}")
     private String brokerPassword;
 
+    @Value("${amq.pool.max-connections:4}")
+    private int maxConnections;
+
+    @Value("${amq.pool.max-sessions-per-connection:100}")
+    private int maxSessionsPerConnection;
+
+    @Value("${amq.pool.connection-idle-timeout-ms:30000}")
+    private int connectionIdleTimeoutMillis;
+
     /**
-     * Creates and configures a {@link ConnectionFactory} for ActiveMQ.
+     * Creates and configures a pooled {@link ConnectionFactory} for ActiveMQ. Connections and sessions are kept
+     * open and shared between Camel consumers and {@link JmsTemplate} sends, rather than a connection being opened
+     * and closed for every send.
      *
      * @return a configured {@link ConnectionFactory} instance
      */
-    @Bean
-    public ConnectionFactory connectionFactory() {
+    @Bean(destroyMethod = "stop")
+    public JmsPoolConnectionFactory connectionFactory() {
         ActiveMQConnectionFactory factory = new ActiveMQConnectionFactory();
         factory.setBrokerURL(brokerURL);
         factory.setUserName(brokerUsername);
         factory.setPassword(brokerPassword);
-        return factory;
+
+        JmsPoolConnectionFactory pool = new JmsPoolConnectionFactory();
+        pool.setConnectionFactory(factory);
+        pool.setMaxConnections(maxConnections);
+        pool.setMaxSessionsPerConnection(maxSessionsPerConnection);
+        pool.setConnectionIdleTimeout(connectionIdleTimeoutMillis);
+        return pool;
     }
 
     /**
@@ -1,11 +1,18 @@
 package com.springboot.learning.kit.config;
 
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 
 import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 public class DataSourceConfig {
@@ -22,14 +29,90 @@ public class DataSourceConfig {
     @Value("${spring.datasource.driver-class-name}")
     private String driverClassName;
 
+    @Value("${datasource.pool.min-size:10}")
+    private int poolMinSize;
+
+    @Value("${datasource.pool.initial-size:20}")
+    private int poolInitialSize;
+
+    @Value("${datasource.pool.connection-timeout-ms:2000}")
+    private long poolConnectionTimeoutMillis;
+
+    @Value("${datasource.pool.idle-timeout-ms:120000}")
+    private long poolIdleTimeoutMillis;
+
+    @Value("${datasource.pool.max-lifetime-ms:1800000}")
+    private long poolMaxLifetimeMillis;
+
+    @Value("${datasource.replicas.urls:}")
+    private List<String> replicaUrls;
+
+    @Value("${datasource.replicas.max-lag-seconds:5}")
+    private long replicaMaxLagSeconds;
+
+    @Value("${datasource.replicas.check-interval-ms:1000}")
+    private long replicaCheckIntervalMillis;
+
+    /**
+     * The connection pool to the primary, which takes all writes. Its size is adjusted at runtime by
+     * ConnectionPoolController, between datasource.pool.min-size and datasource.pool.max-size.
+     */
     @Bean
-    public DataSource dataSource() {
-        return DataSourceBuilder.create()
+    public HikariDataSource primaryDataSource(MeterRegistry meterRegistry) {
+        HikariDataSource dataSource = buildPool(url, "primary");
+        dataSource.setMetricRegistry(meterRegistry);
+
+        // Lets the Postgres driver rewrite a JDBC batch of INSERTs into multi-row INSERT statements
+        dataSource.addDataSourceProperty("reWriteBatchedInserts", "true");
+        return dataSource;
+    }
+
+    /**
+     * Routes @Transactional(readOnly = true) work to the read replicas listed in datasource.replicas.urls, and
+     * everything else to the primary.
+     */
+    @Bean
+    public ReadWriteRoutingDataSource routingDataSource(HikariDataSource primaryDataSource,
+                                                       MeterRegistry meterRegistry) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (String replicaUrl : replicaUrls) {
+            if (replicaUrl.isBlank()) {
+                continue;
+            }
+            HikariDataSource replica = buildPool(replicaUrl.trim(), "replica-" + replicas.size());
+            replica.setReadOnly(true);
+            replica.setMetricRegistry(meterRegistry);
+            replicas.add(replica);
+        }
+
+        return new ReadWriteRoutingDataSource(primaryDataSource, replicas,
+                Duration.ofSeconds(replicaMaxLagSeconds), Duration.ofMillis(replicaCheckIntervalMillis), meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    private HikariDataSource buildPool(String jdbcUrl, String poolName) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
                 .driverClassName(driverClassName)
-                .url(url)
+                .url(jdbcUrl)
                 .username(username)
                 .password(password)
                 .build();
+        dataSource.setPoolName(poolName);
+
+        // A short timeout fails a request fast rather than letting it queue behind a pool that is already
+        // exhausted
+        dataSource.setMinimumIdle(poolMinSize);
+        dataSource.setMaximumPoolSize(Math.max(poolMinSize, poolInitialSize));
+        dataSource.setConnectionTimeout(poolConnectionTimeoutMillis);
+        dataSource.setIdleTimeout(poolIdleTimeoutMillis);
+        dataSource.setMaxLifetime(poolMaxLifetimeMillis);
+        return dataSource;
     }
 
 }
@@ -1,9 +1,12 @@
 package com.springboot.learning.kit.config;
 
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -22,6 +25,18 @@ public class RabbitMQConfig {
     @Value("${spring.rabbitmq.password}")
     private String password;
 
+    @Value("${rmq.listener.prefetch:50}")
+    private int prefetch;
+
+    @Value("${rmq.listener.concurrency:1}")
+    private int concurrency;
+
+    @Value("${rmq.order.placement.batch.size:100}")
+    private int batchSize;
+
+    @Value("${rmq.order.placement.batch.receive-timeout-ms:50}")
+    private long batchReceiveTimeoutMillis;
+
     /**
      * Creates and configures a {@link ConnectionFactory} for RabbitMQ.
      *
@@ -34,12 +49,62 @@ public class RabbitMQConfig {
         factory.setPort(port);
         factory.setUsername(username);
         factory.setPassword(password);
+        // Lets publishers learn, without blocking, whether the broker took each message or couldn't route it
+        factory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+        factory.setPublisherReturns(true);
         return factory;
     }
 
     @Bean
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
-        return new RabbitTemplate(connectionFactory);
+        RabbitTemplate template = new RabbitTemplate(connectionFactory);
+        template.setMandatory(true);
+        return template;
+    }
+
+    /**
+     * Creates the container factory used by every {@link org.springframework.amqp.rabbit.annotation.RabbitListener}.
+     * Listeners start with rmq.listener.concurrency consumers unless they set their own; each consumer has up to
+     * rmq.listener.prefetch unacknowledged messages in hand, so it never sits idle waiting on the broker.
+     *
+     * @param configurer        applies the spring.rabbitmq.listener.simple settings
+     * @param connectionFactory the {@link ConnectionFactory} the listeners consume from
+     * @return a configured {@link SimpleRabbitListenerContainerFactory} instance
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setPrefetchCount(prefetch);
+        factory.setConcurrentConsumers(concurrency);
+        return factory;
+    }
+
+    /**
+     * Creates the container factory for batch listeners. Each consumer hands its listener up to
+     * rmq.order.placement.batch.size messages at once, or fewer if no more arrive within the receive timeout.
+     * Messages are acknowledged by the listener, one by one, so a batch can accept some messages and reject
+     * others.
+     *
+     * @param configurer        applies the spring.rabbitmq.listener.simple settings
+     * @param connectionFactory the {@link ConnectionFactory} the listeners consume from
+     * @return a configured {@link SimpleRabbitListenerContainerFactory} instance
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(batchReceiveTimeoutMillis);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        // A consumer can only fill a batch from the messages the broker has already sent it
+        factory.setPrefetchCount(Math.max(prefetch, batchSize));
+        factory.setConcurrentConsumers(concurrency);
+        return factory;
     }
 
 }
@@ -0,0 +1,175 @@
+package com.springboot.learning.kit.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to the read replicas, round robin, and everything else to the primary. Each
+ * replica's replication lag is checked on a timer; a replica that can't be reached or has fallen more than
+ * maxLag behind is taken out of rotation until it catches up. So is a replica whose WAL receiver isn't streaming
+ * from the primary, as it would report no lag however stale it is, and one whose lag can't be determined. With no
+ * replica in rotation, reads go to the primary.
+ * <p>
+ * The replica's user needs pg_read_all_stats, for example through pg_monitor, to see the WAL receiver's status.
+ * Without it the status reads as null and the replica is never put in rotation.
+ * <p>
+ * The read-only flag of a transaction is only known once it has begun, so this must sit behind a
+ * LazyConnectionDataSourceProxy, which holds off getting the connection until the first statement.
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final String PRIMARY = "primary";
+
+    /**
+     * A replica still streaming from the primary that has replayed all the WAL it received is as current as it can
+     * be, however long ago its last replayed transaction was, so lag is only measured while there is WAL waiting to
+     * be replayed. Once the WAL receiver stops streaming it has nothing left to replay either, so that case has to
+     * be ruled out separately.
+     */
+    private static final String LAG_QUERY = """
+            SELECT pg_is_in_recovery(),
+                   EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming'),
+                   CASE
+                       WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                       ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp())
+                   END""";
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final double maxLagSeconds;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ScheduledExecutorService lagMonitor;
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources, Duration maxLag,
+                                      Duration checkInterval, MeterRegistry meterRegistry) {
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicaDataSources.size(); i++) {
+            Replica replica = new Replica("replica-" + i, replicaDataSources.get(i));
+            replicas.add(replica);
+            targets.put(replica.name, replica.dataSource);
+
+            Gauge.builder("db.replica.lag", replica, r -> r.lagSeconds)
+                    .tag("replica", replica.name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+            Gauge.builder("db.replica.in.rotation", replica, r -> r.inRotation ? 1 : 0)
+                    .tag("replica", replica.name)
+                    .register(meterRegistry);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+
+        if (replicas.isEmpty()) {
+            lagMonitor = null;
+            return;
+        }
+        // Replicas start out of rotation and are added once their first check passes
+        lagMonitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lagMonitor.scheduleWithFixedDelay(this::checkReplicas, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicas.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+
+        int size = replicas.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.inRotation) {
+                return replica.name;
+            }
+        }
+        return PRIMARY;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (lagMonitor != null) {
+            lagMonitor.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(LAG_QUERY)) {
+                resultSet.next();
+                boolean inRecovery = resultSet.getBoolean(1);
+                boolean streaming = resultSet.getBoolean(2);
+                double lagSeconds = resultSet.getDouble(3);
+                if (!inRecovery) {
+                    // Most likely promoted in a failover, after which it no longer follows our primary
+                    replica.update(false, Double.NaN, "it is not in recovery");
+                } else if (!streaming) {
+                    replica.update(false, Double.NaN, "it isn't streaming from the primary, so its lag is unknown");
+                } else if (resultSet.wasNull()) {
+                    replica.update(false, Double.NaN, "it hasn't replayed any transactions yet");
+                } else if (lagSeconds > maxLagSeconds) {
+                    replica.update(false, lagSeconds, "it is " + lagSeconds + "s behind");
+                } else {
+                    replica.update(true, lagSeconds, null);
+                }
+            } catch (SQLException e) {
+                replica.update(false, Double.NaN, "it can't be reached: " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean inRotation;
+        private volatile double lagSeconds = Double.NaN;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        void update(boolean healthy, double lagSeconds, String reason) {
+            this.lagSeconds = lagSeconds;
+            if (healthy && !inRotation) {
+                log.info("Read replica {} is in rotation", name);
+            } else if (!healthy && inRotation) {
+                log.warn("Taking read replica {} out of rotation as {}", name, reason);
+            }
+            inRotation = healthy;
+        }
+    }
+}
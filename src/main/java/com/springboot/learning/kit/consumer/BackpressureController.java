@@ -0,0 +1,190 @@
+package com.springboot.learning.kit.consumer;
+
+import com.springboot.learning.kit.pool.ConnectionPoolController;
+import com.springboot.learning.kit.pool.TimerWindow;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.CamelContext;
+import org.apache.camel.ServiceStatus;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops taking messages from the brokers while the database is struggling, so the backlog waits in the queues
+ * rather than being pulled in, timing out, and ending up in the dead letter queues.
+ * <p>
+ * Every check interval it looks at how long orders took to save and commit, and how long threads waited for a
+ * connection. Once either goes past its pause threshold, or the connection pool is saturated, the running
+ * RabbitMQ listener containers are stopped and the Camel consumer routes suspended; messages already taken are
+ * finished first, and unacknowledged ones go back to the queue. They are resumed once both times have stayed
+ * under their lower resume thresholds for resume-checks checks in a row, and no sooner than min-pause-ms after
+ * pausing, so the consumers don't flap on and off around a single threshold.
+ * <p>
+ * Orders submitted over HTTP keep recording commit times while paused. Without them the controller goes by the
+ * connection wait alone, and if the database is still slow once resumed, the consumers are paused again.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "backpressure.enabled", havingValue = "true", matchIfMissing = true)
+public class BackpressureController {
+
+    @Value("${backpressure.check-interval-ms:1000}")
+    private long checkIntervalMillis;
+
+    @Value("${backpressure.pause.commit-latency-ms:500}")
+    private double pauseCommitMillis;
+
+    @Value("${backpressure.pause.connection-wait-ms:200}")
+    private double pauseWaitMillis;
+
+    @Value("${backpressure.resume.commit-latency-ms:150}")
+    private double resumeCommitMillis;
+
+    @Value("${backpressure.resume.connection-wait-ms:20}")
+    private double resumeWaitMillis;
+
+    @Value("${backpressure.resume.checks:5}")
+    private int resumeChecks;
+
+    @Value("${backpressure.min-pause-ms:10000}")
+    private long minPauseMillis;
+
+    @Value("${backpressure.camel-routes:orderPlacementRoute,orderStatusRoute,orderCancellationRoute}")
+    private List<String> camelRoutes;
+
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final CamelContext camelContext;
+    private final ConnectionPoolController connectionPoolController;
+    private final MeterRegistry meterRegistry;
+
+    private ScheduledExecutorService scheduler;
+    private Counter pauses;
+
+    // Only touched by the scheduler thread, apart from the volatile one read by the gauge
+    private TimerWindow commitTimes;
+    private TimerWindow acquireTimes;
+    private final List<MessageListenerContainer> pausedContainers = new ArrayList<>();
+    private final List<String> suspendedRoutes = new ArrayList<>();
+    private long pausedAt;
+    private int healthyChecks;
+    private volatile boolean paused;
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        commitTimes = new TimerWindow(meterRegistry, "orders.persist");
+        acquireTimes = new TimerWindow(meterRegistry, "hikaricp.connections.acquire", "pool", "primary");
+        pauses = meterRegistry.counter("backpressure.pauses");
+        Gauge.builder("backpressure.paused", this, controller -> controller.paused ? 1 : 0)
+                .description("Whether broker consumers are paused because the database is struggling")
+                .register(meterRegistry);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "backpressure-controller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::check, checkIntervalMillis, checkIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * @return true while broker consumers are paused
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    private void check() {
+        try {
+            double commitMillis = commitTimes.meanMillis();
+            double waitMillis = acquireTimes.meanMillis();
+            boolean saturated = connectionPoolController.isSaturated();
+
+            if (!paused) {
+                if (saturated || commitMillis > pauseCommitMillis || waitMillis > pauseWaitMillis) {
+                    pause(commitMillis, waitMillis);
+                }
+                return;
+            }
+
+            // NaN compares false, so a window with nothing recorded doesn't count against resuming
+            boolean healthy = !saturated && !(commitMillis >= resumeCommitMillis) && !(waitMillis >= resumeWaitMillis);
+            healthyChecks = healthy ? healthyChecks + 1 : 0;
+            if (healthyChecks >= resumeChecks && System.currentTimeMillis() - pausedAt >= minPauseMillis) {
+                resume(commitMillis, waitMillis);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to check database backpressure", e);
+        }
+    }
+
+    private void pause(double commitMillis, double waitMillis) {
+        log.warn("Database is struggling, pausing broker consumers: commit time {} ms, connection wait {} ms",
+                format(commitMillis), format(waitMillis));
+        paused = true;
+        pausedAt = System.currentTimeMillis();
+        healthyChecks = 0;
+        pauses.increment();
+
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            if (container.isRunning()) {
+                container.stop();
+                pausedContainers.add(container);
+            }
+        }
+        for (String routeId : camelRoutes) {
+            try {
+                if (camelContext.getRouteController().getRouteStatus(routeId) == ServiceStatus.Started) {
+                    camelContext.getRouteController().suspendRoute(routeId);
+                    suspendedRoutes.add(routeId);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to suspend route {}", routeId, e);
+            }
+        }
+    }
+
+    private void resume(double commitMillis, double waitMillis) {
+        log.info("Database has recovered, resuming broker consumers: commit time {} ms, connection wait {} ms",
+                format(commitMillis), format(waitMillis));
+
+        pausedContainers.forEach(MessageListenerContainer::start);
+        pausedContainers.clear();
+        for (String routeId : suspendedRoutes) {
+            try {
+                camelContext.getRouteController().resumeRoute(routeId);
+            } catch (Exception e) {
+                log.warn("Failed to resume route {}", routeId, e);
+            }
+        }
+        suspendedRoutes.clear();
+        paused = false;
+    }
+
+    private static String format(double millis) {
+        return String.format("%.1f", millis);
+    }
+}
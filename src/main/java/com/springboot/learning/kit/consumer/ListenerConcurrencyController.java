@@ -0,0 +1,135 @@
+package com.springboot.learning.kit.consumer;
+
+import com.springboot.learning.kit.pool.TimerWindow;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scales the consumers of the RabbitMQ order placement listener, batch or not, with its backlog. Every check
+ * interval the queue depth is read with a passive declare, and the listener gets one consumer per
+ * backlog-per-consumer messages waiting, between min-consumers and max-consumers.
+ * <p>
+ * More consumers only help while the database keeps up. If orders have recently taken longer than
+ * max-commit-latency-ms to save and commit, consumers are taken away one at a time instead, whatever the
+ * backlog, and the messages wait in the queue.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "rmq.order.placement.scaling.enabled", havingValue = "true", matchIfMissing = true)
+public class ListenerConcurrencyController {
+
+    @Value("${rmq.order.placement.queue}")
+    private String orderPlacementQueue;
+
+    @Value("${rmq.order.placement.batch.enabled:false}")
+    private boolean batchMode;
+
+    @Value("${rmq.order.placement.scaling.min-consumers:2}")
+    private int minConsumers;
+
+    @Value("${rmq.order.placement.scaling.max-consumers:16}")
+    private int maxConsumers;
+
+    @Value("${rmq.order.placement.scaling.check-interval-ms:2000}")
+    private long checkIntervalMillis;
+
+    @Value("${rmq.order.placement.scaling.backlog-per-consumer:200}")
+    private int backlogPerConsumer;
+
+    @Value("${rmq.order.placement.scaling.max-commit-latency-ms:100}")
+    private double maxCommitLatencyMillis;
+
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final AmqpAdmin amqpAdmin;
+    private final MeterRegistry meterRegistry;
+
+    private ScheduledExecutorService scheduler;
+    private TimerWindow commitTimes;
+    private volatile int consumers;
+    private volatile long backlog;
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        consumers = minConsumers;
+        commitTimes = new TimerWindow(meterRegistry, "orders.persist");
+        Gauge.builder("rabbit.listener.concurrency", this, controller -> controller.consumers)
+                .tag("queue", orderPlacementQueue)
+                .description("Consumers currently assigned to the queue")
+                .register(meterRegistry);
+        Gauge.builder("rabbit.queue.backlog", this, controller -> controller.backlog)
+                .tag("queue", orderPlacementQueue)
+                .description("Messages ready in the queue at the last check")
+                .register(meterRegistry);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rabbit-listener-scaler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::adjust, checkIntervalMillis, checkIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void adjust() {
+        try {
+            String listenerId = batchMode
+                    ? NewOrderConsumer.PLACEMENT_BATCH_LISTENER
+                    : NewOrderConsumer.PLACEMENT_LISTENER;
+            if (!(listenerRegistry.getListenerContainer(listenerId) instanceof SimpleMessageListenerContainer container)
+                    || !container.isRunning()) {
+                // Stopped or paused, for example by backpressure; nothing to scale
+                return;
+            }
+
+            QueueInformation queue = amqpAdmin.getQueueInfo(orderPlacementQueue);
+            if (queue == null) {
+                return;
+            }
+            backlog = queue.getMessageCount();
+            double commitMillis = commitTimes.meanMillis();
+
+            int current = consumers;
+            int target;
+            if (commitMillis > maxCommitLatencyMillis) {
+                target = Math.max(minConsumers, current - 1);
+            } else {
+                int wanted = (int) Math.min(maxConsumers, Math.max(minConsumers, backlog / backlogPerConsumer));
+                // Grows at most twofold per check, so the database sees the extra load before more is added
+                target = wanted > current ? Math.min(wanted, current * 2) : wanted < current ? current - 1 : current;
+            }
+
+            if (target != current) {
+                container.setConcurrentConsumers(target);
+                consumers = target;
+                log.info("Scaled {} consumers from {} to {}: backlog {}, commit time {} ms", orderPlacementQueue,
+                        current, target, backlog, String.format("%.1f", commitMillis));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to scale consumers of {}", orderPlacementQueue, e);
+        }
+    }
+}
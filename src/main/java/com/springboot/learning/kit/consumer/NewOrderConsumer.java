@@ -1,15 +1,32 @@
 package com.springboot.learning.kit.consumer;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
 import com.springboot.learning.kit.dto.request.OrderRequest;
 import com.springboot.learning.kit.exception.OrderProcessingException;
+import com.springboot.learning.kit.exception.RetryableFailures;
+import com.springboot.learning.kit.routes.RabbitMQRoutes;
 import com.springboot.learning.kit.service.OrderProcessingService;
+import com.springboot.learning.kit.transformer.OrderMessageCodec;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
+
 /**
  * Consumer class for handling order-related messages.
  */
@@ -18,44 +35,231 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class NewOrderConsumer {
 
-    private final ObjectMapper objectMapper;
+    public static final String PLACEMENT_LISTENER = "orderPlacementListener";
+    public static final String PLACEMENT_BATCH_LISTENER = "orderPlacementBatchListener";
+
+    /**
+     * Number of times a message has been through the retry queue.
+     */
+    public static final String RETRIES_HEADER = "x-order-retries";
+
+    /**
+     * Why a message was dead lettered, recorded for the dead letter queue replay to filter on.
+     */
+    public static final String EXCEPTION_MESSAGE_HEADER = "x-exception-message";
+
+    @Value("${rmq.order.placement.queue.retry}")
+    private String retryQueue;
+
+    @Value("${rmq.order.placement.queue.dlq}")
+    private String deadLetterQueue;
+
+    @Value("${rmq.order.placement.retry.max-attempts:5}")
+    private int maxRetries;
+
+    @Value("${rmq.order.placement.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMillis;
+
+    private final MessagePropertiesConverter messagePropertiesConverter = new DefaultMessagePropertiesConverter();
+    private final OrderMessageCodec orderMessageCodec;
     private final OrderProcessingService orderProcessingService;
 
     /**
-     * Consumes messages from the ActiveMQ
+     * Parses an order message from ActiveMQ, the first stage of the ActiveMQ placement route. Bytes messages are
+     * parsed as they are, text messages are encoded by Camel first. The encoding is named by the message's
+     * contentType and contentEncoding properties; messages without them are read as uncompressed JSON.
+     *
+     * @param message         the body of the message received from the queue
+     * @param contentType     the message's contentType property, or null
+     * @param contentEncoding the message's contentEncoding property, or null
+     * @return the order
+     */
+    public OrderRequest parseActiveMQOrder(byte[] message, String contentType, String contentEncoding) {
+        return toOrderRequest(message, contentType, contentEncoding);
+    }
+
+    /**
+     * Consumes messages from RabbitMQ. Orders that fail because the database is unavailable go to the retry queue,
+     * other failures to the dead letter queue.
      *
      * @param message the message received from the queue
+     * @param channel the channel the message was received on, to send it to the retry queue
      */
-    public void processActiveMQOrder(String message) {
+    @RabbitListener(id = PLACEMENT_LISTENER, queues = "${rmq.order.placement.queue}",
+            concurrency = "${rmq.order.placement.scaling.min-consumers:2}",
+            autoStartup = "#{!${rmq.order.placement.batch.enabled:false}}")
+    public void processRabbitMQOrder(Message message, Channel channel) throws IOException {
+        log.error("Received new RabbitMQ order message");
         try {
-            log.error("Received new ActiveMQ order message");
             OrderRequest orderRequest = toOrderRequest(message);
             orderProcessingService.processNewOrder(orderRequest);
+        } catch (RuntimeException e) {
+            // The container acknowledges the message once this returns, or puts it back on the queue if the broker
+            // didn't confirm its copy
+            if (RetryableFailures.isRetryable(e) && sendToRetryQueue(message, channel)) {
+                return;
+            }
+            log.error("Sending RabbitMQ order message to the dead letter queue ~ {}", e.getMessage());
+            sendToDeadLetterQueue(message, channel, e);
+        }
+    }
+
+    /**
+     * Consumes batches of messages from RabbitMQ, in place of {@link #processRabbitMQOrder(Message, Channel)} when
+     * rmq.order.placement.batch.enabled is set. The messages are parsed in parallel and the valid orders saved in
+     * one transaction. Each message is then settled on its own: placed orders are acknowledged, failed ones are
+     * sent to the dead letter queue, and ones that failed because the database is unavailable are sent to the
+     * retry queue, or to the dead letter queue once out of retries. Every message is settled, even if processing
+     * the batch fails outright.
+     *
+     * @param messages the messages received from the queue
+     * @param channel  the channel the messages were received on, to acknowledge them
+     */
+    @RabbitListener(id = PLACEMENT_BATCH_LISTENER, queues = "${rmq.order.placement.queue}",
+            containerFactory = "batchRabbitListenerContainerFactory",
+            concurrency = "${rmq.order.placement.scaling.min-consumers:2}",
+            autoStartup = "${rmq.order.placement.batch.enabled:false}")
+    public void processRabbitMQOrderBatch(List<Message> messages, Channel channel) throws IOException {
+        log.info("Received batch of {} RabbitMQ order messages", messages.size());
+        RuntimeException[] failures;
+        try {
+            failures = placeOrders(messages);
+        } catch (RuntimeException e) {
+            log.error("Failed to process batch of {} RabbitMQ order messages", messages.size(), e);
+            failures = new RuntimeException[messages.size()];
+            Arrays.fill(failures, e);
+        }
+
+        if (Arrays.stream(failures).allMatch(Objects::isNull)) {
+            long lastTag = messages.get(messages.size() - 1).getMessageProperties().getDeliveryTag();
+            channel.basicAck(lastTag, true);
+            return;
+        }
+        for (int i = 0; i < messages.size(); i++) {
+            long deliveryTag = messages.get(i).getMessageProperties().getDeliveryTag();
+            RuntimeException failure = failures[i];
+            try {
+                if (failure == null) {
+                    channel.basicAck(deliveryTag, false);
+                } else if (RetryableFailures.isRetryable(failure) && sendToRetryQueue(messages.get(i), channel)) {
+                    channel.basicAck(deliveryTag, false);
+                } else {
+                    log.error("Sending RabbitMQ order message to the dead letter queue ~ {}", failure.getMessage());
+                    sendToDeadLetterQueue(messages.get(i), channel, failure);
+                    channel.basicAck(deliveryTag, false);
+                }
+            } catch (IOException e) {
+                // The container doesn't settle messages for a listener acknowledging its own, so the rest of the
+                // batch, everything still unacknowledged, is put back here unless the failed confirm already closed
+                // the channel
+                if (channel.isOpen()) {
+                    long lastTag = messages.get(messages.size() - 1).getMessageProperties().getDeliveryTag();
+                    channel.basicNack(lastTag, true, true);
+                }
+                throw e;
+            }
         }
-        catch (Exception e) {
-            log.error("Failed to process ActiveMQ order message: {}", message, e);
-            throw new OrderProcessingException("Failed to process order message: " + message, e);
+    }
+
+    /**
+     * @return the failure of each message, in the same order, or null for messages whose order was placed or
+     * skipped
+     */
+    private RuntimeException[] placeOrders(List<Message> messages) {
+        OrderRequest[] orders = new OrderRequest[messages.size()];
+        RuntimeException[] failures = new RuntimeException[messages.size()];
+        IntStream.range(0, messages.size()).parallel().forEach(i -> {
+            try {
+                orders[i] = toOrderRequest(messages.get(i));
+            } catch (OrderProcessingException e) {
+                failures[i] = e;
+            }
+        });
+
+        List<Integer> parsed = IntStream.range(0, orders.length).filter(i -> orders[i] != null).boxed().toList();
+        List<RuntimeException> outcomes = orderProcessingService.processNewOrders(
+                parsed.stream().map(i -> orders[i]).toList());
+        for (int j = 0; j < parsed.size(); j++) {
+            failures[parsed.get(j)] = outcomes.get(j);
         }
+        return failures;
     }
 
     /**
-     * Consumes messages from RabbitMQ
+     * Publishes a copy of the message to the retry queue, which puts it back on the placement queue after the
+     * retry delay, rather than requeueing it straight away to fail again while the database is still down. The
+     * caller acknowledges the original once this returns true, by which time the broker has confirmed the copy.
      *
-     * @param message the message received from the queue
+     * @return false if the message has used up its retries and should be dead lettered instead
+     * @throws IOException if the broker didn't confirm the copy, in which case the original must not be
+     *                     acknowledged
      */
-    @RabbitListener(queues = "${rmq.order.placement.queue}")
-    public void processRabbitMQOrder(String message) {
-        log.error("Received new RabbitMQ order message");
-        OrderRequest orderRequest = toOrderRequest(message);
-        orderProcessingService.processNewOrder(orderRequest);
+    private boolean sendToRetryQueue(Message message, Channel channel) throws IOException {
+        MessageProperties properties = message.getMessageProperties();
+        int retries = properties.getHeader(RETRIES_HEADER) instanceof Number number ? number.intValue() : 0;
+        if (retries >= maxRetries) {
+            return false;
+        }
+
+        properties.setHeader(RETRIES_HEADER, retries + 1);
+        AMQP.BasicProperties retryProperties = messagePropertiesConverter.fromMessageProperties(properties,
+                StandardCharsets.UTF_8.name());
+        channel.basicPublish(RabbitMQRoutes.EXCHANGE, retryQueue, retryProperties, message.getBody());
+        awaitConfirm(channel);
+        return true;
+    }
+
+    /**
+     * Publishes a copy of the message to the dead letter queue with the reason it failed, which the broker
+     * doesn't record when it dead letters a rejected message itself. The caller acknowledges the original once
+     * this returns, by which time the broker has confirmed the copy.
+     *
+     * @throws IOException if the broker didn't confirm the copy, in which case the original must not be
+     *                     acknowledged
+     */
+    private void sendToDeadLetterQueue(Message message, Channel channel, RuntimeException failure)
+            throws IOException {
+        MessageProperties properties = message.getMessageProperties();
+        properties.setHeader(EXCEPTION_MESSAGE_HEADER, String.valueOf(failure.getMessage()));
+        AMQP.BasicProperties deadLetterProperties = messagePropertiesConverter.fromMessageProperties(properties,
+                StandardCharsets.UTF_8.name());
+        channel.basicPublish(RabbitMQRoutes.EXCHANGE, deadLetterQueue, deadLetterProperties, message.getBody());
+        awaitConfirm(channel);
     }
 
-    private OrderRequest toOrderRequest(String message) {
+    /**
+     * Waits for the broker to confirm what was just published on the channel, which is in confirm mode like every
+     * channel of the shared connection factory. If the broker rejects the message or doesn't confirm it in time the
+     * channel is closed, and the broker puts every message still unacknowledged on it back on the queue.
+     */
+    private void awaitConfirm(Channel channel) throws IOException {
+        try {
+            channel.waitForConfirmsOrDie(confirmTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the broker to confirm a message", e);
+        } catch (TimeoutException e) {
+            throw new IOException("Broker didn't confirm a message within " + confirmTimeoutMillis + " ms", e);
+        }
+    }
+
+    private OrderRequest toOrderRequest(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        return toOrderRequest(message.getBody(), properties.getContentType(), properties.getContentEncoding());
+    }
+
+    /**
+     * Parses the order straight from the message body, without decoding it to a String first. The body is kept out
+     * of logs and errors, as it can be large and holds the customer's details.
+     */
+    private OrderRequest toOrderRequest(byte[] message, String contentType, String contentEncoding) {
         try {
-            return objectMapper.readValue(message, OrderRequest.class);
+            return orderMessageCodec.decode(message, contentType, contentEncoding);
         } catch (JsonProcessingException e) {
-            log.error("Failed to parse order message: {}", message, e);
-            throw new OrderProcessingException("Invalid order received ~ " + e);
+            log.error("Failed to parse order message of {} bytes ~ {}", message.length, e.getOriginalMessage());
+            throw new OrderProcessingException("Invalid order received ~ " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new OrderProcessingException("Invalid order received ~ " + e.getMessage());
         }
     }
 }
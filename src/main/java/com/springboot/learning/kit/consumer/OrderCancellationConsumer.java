@@ -0,0 +1,59 @@
+package com.springboot.learning.kit.consumer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.learning.kit.dto.request.OrderCancellationRequest;
+import com.springboot.learning.kit.exception.OrderValidationException;
+import com.springboot.learning.kit.service.OrderCancellationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumes order cancellations from the order cancellation queues. As with status changes, each consumer thread
+ * waits for the batch holding its cancellation to commit before the message is acknowledged.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderCancellationConsumer {
+
+    private final ObjectMapper objectMapper;
+    private final OrderCancellationService orderCancellationService;
+
+    /**
+     * Consumes cancellation messages from ActiveMQ
+     *
+     * @param message the message received from the queue
+     */
+    public void processActiveMQCancellation(String message) {
+        orderCancellationService.cancelOrder(toCancellation(message));
+    }
+
+    /**
+     * Consumes cancellation messages from RabbitMQ. Malformed messages go straight to the dead letter queue rather
+     * than being redelivered.
+     *
+     * @param message the message received from the queue
+     */
+    @RabbitListener(queues = "${rmq.order.cancellation.queue}",
+            concurrency = "${rmq.order.cancellation.concurrency:4}")
+    public void processRabbitMQCancellation(String message) {
+        try {
+            orderCancellationService.cancelOrder(toCancellation(message));
+        } catch (OrderValidationException e) {
+            throw new AmqpRejectAndDontRequeueException(e.getMessage(), e);
+        }
+    }
+
+    private OrderCancellationRequest toCancellation(String message) {
+        try {
+            return objectMapper.readValue(message, OrderCancellationRequest.class);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to parse order cancellation message: {}", message, e);
+            throw new OrderValidationException("Invalid order cancellation received ~ " + e.getOriginalMessage());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.springboot.learning.kit.consumer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.learning.kit.dto.request.OrderStatusUpdateRequest;
+import com.springboot.learning.kit.exception.OrderProcessingException;
+import com.springboot.learning.kit.exception.OrderValidationException;
+import com.springboot.learning.kit.service.OrderStatusUpdateService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumes item status changes from the order status queues. Each consumer thread waits for the batch holding
+ * its change to commit before the message is acknowledged, so the queues are consumed with several threads to
+ * give the batches something to group.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderStatusConsumer {
+
+    private final ObjectMapper objectMapper;
+    private final OrderStatusUpdateService orderStatusUpdateService;
+
+    /**
+     * Consumes status messages from ActiveMQ
+     *
+     * @param message the message received from the queue
+     */
+    public void processActiveMQStatus(String message) {
+        orderStatusUpdateService.updateStatus(toStatusUpdate(message));
+    }
+
+    /**
+     * Consumes status messages from RabbitMQ. Malformed messages go straight to the dead letter queue rather than
+     * being redelivered.
+     *
+     * @param message the message received from the queue
+     */
+    @RabbitListener(queues = "${rmq.order.status.queue}", concurrency = "${rmq.order.status.concurrency:8}")
+    public void processRabbitMQStatus(String message) {
+        try {
+            orderStatusUpdateService.updateStatus(toStatusUpdate(message));
+        } catch (OrderValidationException e) {
+            throw new AmqpRejectAndDontRequeueException(e.getMessage(), e);
+        }
+    }
+
+    private OrderStatusUpdateRequest toStatusUpdate(String message) {
+        try {
+            return objectMapper.readValue(message, OrderStatusUpdateRequest.class);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to parse order status message: {}", message, e);
+            throw new OrderValidationException("Invalid order status received ~ " + e.getOriginalMessage());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.springboot.learning.kit.controller;
+
+import com.springboot.learning.kit.exception.ServiceOverloadedException;
+import com.springboot.learning.kit.pool.ConnectionPoolController;
+import com.springboot.learning.kit.service.BulkOrderIngestService;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/order")
+@RequiredArgsConstructor
+public class BulkOrderController {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final BulkOrderIngestService bulkOrderIngestService;
+    private final ConnectionPoolController connectionPoolController;
+
+    /**
+     * Endpoint to load a large batch of orders, e.g. the nightly offline and in-store uploads.
+     * The body is streamed with one OrderRequest per line, and the response streams back one result per line
+     * followed by a summary, so neither side has to hold the whole upload in memory. Uploads are refused with 503
+     * while the database connection pool is saturated.
+     *
+     * @param upload   the NDJSON request body
+     * @param response the response the per-line report is written to
+     */
+    @PostMapping(value = "/bulk", consumes = NDJSON, produces = NDJSON)
+    public void submitBulkOrders(InputStream upload, HttpServletResponse response) throws IOException {
+        try {
+            connectionPoolController.checkCapacity();
+        }
+        catch (ServiceOverloadedException e) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "30");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage());
+            return;
+        }
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(NDJSON);
+        bulkOrderIngestService.ingest(upload, response.getOutputStream());
+    }
+}
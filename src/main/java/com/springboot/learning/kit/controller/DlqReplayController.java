@@ -0,0 +1,69 @@
+package com.springboot.learning.kit.controller;
+
+import com.springboot.learning.kit.dto.request.DlqReplayRequest;
+import com.springboot.learning.kit.dto.response.DlqReplayStatusResponse;
+import com.springboot.learning.kit.exception.OrderValidationException;
+import com.springboot.learning.kit.exception.ReplayAlreadyRunningException;
+import com.springboot.learning.kit.service.DlqReplayService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/management/dlq/replay")
+@RequiredArgsConstructor
+public class DlqReplayController {
+
+    private final DlqReplayService dlqReplayService;
+
+    /**
+     * Endpoint to start replaying the order placement dead letter queue of one broker. The replay runs in the
+     * background; its progress is returned by {@link #getReplayStatus()}.
+     *
+     * @param request the broker, and optionally the rate, parallelism, filters and whether it's a dry run
+     * @return 202 with the status of the replay, 400 if the request is invalid, or 409 if a replay is running
+     */
+    @PostMapping
+    public ResponseEntity<DlqReplayStatusResponse> startReplay(@RequestBody DlqReplayRequest request) {
+        return ResponseEntity.accepted().body(dlqReplayService.startReplay(request));
+    }
+
+    /**
+     * Endpoint to get the progress of the running replay, or the outcome of the last one.
+     *
+     * @return the status of the replay, or 404 if none has run
+     */
+    @GetMapping
+    public ResponseEntity<DlqReplayStatusResponse> getReplayStatus() {
+        DlqReplayStatusResponse status = dlqReplayService.getStatus();
+        return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
+    }
+
+    /**
+     * Endpoint to stop the running replay. Messages being moved are finished first, the rest stay where they are.
+     *
+     * @return the status of the replay, or 404 if none has run
+     */
+    @DeleteMapping
+    public ResponseEntity<DlqReplayStatusResponse> stopReplay() {
+        DlqReplayStatusResponse status = dlqReplayService.stopReplay();
+        return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
+    }
+
+    @ExceptionHandler(OrderValidationException.class)
+    public ResponseEntity<String> handleInvalidRequest(OrderValidationException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(ReplayAlreadyRunningException.class)
+    public ResponseEntity<String> handleReplayRunning(ReplayAlreadyRunningException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+    }
+}
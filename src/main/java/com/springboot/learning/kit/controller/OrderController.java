@@ -1,14 +1,32 @@
 package com.springboot.learning.kit.controller;
 
+import com.springboot.learning.kit.domain.OrderType;
 import com.springboot.learning.kit.dto.request.OrderRequest;
+import com.springboot.learning.kit.dto.response.OrderPageResponse;
+import com.springboot.learning.kit.dto.response.OrderStatusResponse;
+import com.springboot.learning.kit.exception.OrderValidationException;
+import com.springboot.learning.kit.exception.ServiceOverloadedException;
+import com.springboot.learning.kit.pool.ConnectionPoolController;
+import com.springboot.learning.kit.service.AsyncOrderSubmissionService;
+import com.springboot.learning.kit.service.OrderExportService;
+import com.springboot.learning.kit.service.OrderListingService;
 import com.springboot.learning.kit.service.OrderProcessingService;
+import com.springboot.learning.kit.service.OrderStatusService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/order")
@@ -16,23 +34,146 @@ import org.springframework.web.bind.annotation.RestController;
 public class OrderController {
 
     private final OrderProcessingService orderProcessingService;
+    private final OrderStatusService orderStatusService;
+    private final OrderListingService orderListingService;
+    private final OrderExportService orderExportService;
+    private final ConnectionPoolController connectionPoolController;
+    private final AsyncOrderSubmissionService asyncOrderSubmissionService;
 
     /**
-     * Endpoint to submit an order for processing.
+     * Endpoint to submit an order for processing. When order.submit.async.enabled is set the order is handed to
+     * the broker and 202 is returned with the URL of its status once the broker has it; otherwise the order is
+     * saved before returning.
      *
      * @param orderRequest the order to be processed
-     * @return a ResponseEntity indicating the result of the operation
+     * @return a ResponseEntity indicating the result of the operation, 400 if the order is invalid, or 503 if the
+     * database is saturated or the broker didn't confirm the order in time and it should be retried
      */
     @PostMapping("/submit")
-    public ResponseEntity<String> submitOrder(@RequestBody OrderRequest orderRequest) {
+    public CompletableFuture<ResponseEntity<String>> submitOrder(@RequestBody OrderRequest orderRequest) {
+        if (asyncOrderSubmissionService.isEnabled()) {
+            return submitOrderAsync(orderRequest);
+        }
+
         try {
+            connectionPoolController.checkCapacity();
             orderProcessingService.processNewOrder(orderRequest);
-            return ResponseEntity.ok("Order submitted successfully");
+            return CompletableFuture.completedFuture(ResponseEntity.ok("Order submitted successfully"));
         }
         catch (Exception e) {
+            return CompletableFuture.completedFuture(submitErrorResponse(e));
+        }
+    }
+
+    /**
+     * Endpoint to get the status of an order and each of its items.
+     *
+     * @param uuid the UUID of the order
+     * @return the order status, or 404 if the order doesn't exist
+     */
+    @GetMapping("/{uuid}/status")
+    public ResponseEntity<OrderStatusResponse> getOrderStatus(@PathVariable("uuid") long uuid) {
+        return orderStatusService.getOrderStatus(uuid)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Endpoint to list orders of a type, optionally within a creation time range, one page at a time.
+     *
+     * @param type  the order type to list
+     * @param after the next cursor of the previous page, omitted for the first page
+     * @param from  the earliest creation time to include
+     * @param to    the creation time to stop before
+     * @param limit the page size
+     * @return the page of orders, or 400 if the cursor or page size is invalid
+     */
+    @GetMapping
+    public ResponseEntity<OrderPageResponse> listOrders(@RequestParam("type") OrderType type,
+                                                        @RequestParam(value = "after", required = false) String after,
+                                                        @RequestParam(value = "from", required = false)
+                                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                        LocalDateTime from,
+                                                        @RequestParam(value = "to", required = false)
+                                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                        LocalDateTime to,
+                                                        @RequestParam(value = "limit", defaultValue = "100")
+                                                        int limit) {
+        return ResponseEntity.ok(orderListingService.listOrders(type, after, from, to, limit));
+    }
+
+    /**
+     * Endpoint to export orders with their items, one row per item, streamed as it's read from the database.
+     *
+     * @param format   csv or ndjson
+     * @param type     the order type to export, omitted for all types
+     * @param from     the earliest creation time to include
+     * @param to       the creation time to stop before
+     * @param response the response the export is written to
+     */
+    @GetMapping("/export")
+    public void exportOrders(@RequestParam(value = "format", defaultValue = "csv") String format,
+                             @RequestParam(value = "type", required = false) OrderType type,
+                             @RequestParam(value = "from", required = false)
+                             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                             @RequestParam(value = "to", required = false)
+                             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                             HttpServletResponse response) throws IOException {
+        OrderExportService.Format exportFormat;
+        try {
+            exportFormat = OrderExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Unsupported export format: " + format);
+            return;
+        }
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(exportFormat == OrderExportService.Format.CSV ? "text/csv" : "application/x-ndjson");
+        response.setHeader("Content-Disposition",
+                "attachment; filename=orders." + exportFormat.name().toLowerCase(Locale.ROOT));
+        orderExportService.export(exportFormat, type, from, to, response.getOutputStream());
+    }
+
+    @ExceptionHandler(OrderValidationException.class)
+    public ResponseEntity<String> handleInvalidRequest(OrderValidationException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    private CompletableFuture<ResponseEntity<String>> submitOrderAsync(OrderRequest orderRequest) {
+        // Built here, as the request is no longer bound to the thread that completes the future
+        URI statusUrl = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/order/{uuid}/status")
+                .buildAndExpand(orderRequest.getUUID())
+                .toUri();
+        try {
+            return asyncOrderSubmissionService.submit(orderRequest)
+                    .thenApply(accepted -> ResponseEntity.accepted()
+                            .location(statusUrl)
+                            .body("Order accepted for processing"))
+                    .exceptionally(e -> submitErrorResponse(e instanceof CompletionException ? e.getCause() : e));
+        }
+        catch (OrderValidationException e) {
+            return CompletableFuture.completedFuture(ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(e.getMessage()));
+        }
+    }
+
+    private static ResponseEntity<String> submitErrorResponse(Throwable e) {
+        if (e instanceof OrderValidationException) {
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(e.getMessage());
+        }
+        if (e instanceof ServiceOverloadedException) {
             return ResponseEntity
-                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Error processing order: " + e.getMessage());
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(e.getMessage());
         }
+        return ResponseEntity
+                .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Error processing order: " + e.getMessage());
     }
 }
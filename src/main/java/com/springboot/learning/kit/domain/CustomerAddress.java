@@ -6,6 +6,12 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+
 @Entity
 @Getter
 @Builder
@@ -14,7 +20,8 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class CustomerAddress {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_address_seq")
+    @SequenceGenerator(name = "customer_address_seq", sequenceName = "customer_address_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "street")
@@ -31,4 +38,28 @@ public class CustomerAddress {
 
     @Column(name = "country")
     private String country;
+
+    @Column(name = "fingerprint")
+    private String fingerprint;
+
+    /**
+     * Hashes the trimmed, lower-cased address fields into the fingerprint an address is interned by, so the
+     * same address typed with different spacing or casing resolves to the same row.
+     *
+     * @return the SHA-256 fingerprint as 64 hex characters
+     */
+    public static String fingerprintOf(String street, String city, String state, String zipCode, String country) {
+        String normalised = String.join("\u001F",
+                normalise(street), normalise(city), normalise(state), normalise(zipCode), normalise(country));
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(normalised.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String normalise(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
 }
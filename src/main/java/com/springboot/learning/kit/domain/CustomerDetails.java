@@ -6,6 +6,8 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
+import java.util.Locale;
+
 @Entity
 @Getter
 @Builder
@@ -14,11 +16,35 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class CustomerDetails {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_details_seq")
+    @SequenceGenerator(name = "customer_details_seq", sequenceName = "customer_details_seq", allocationSize = 50)
     private Long id;
 
     private String name;
     private String email;
     private String phone;
 
+    @Column(name = "customer_key")
+    private String customerKey;
+
+    /**
+     * Builds the key a customer is recognised by across orders: the email trimmed and lower-cased, plus the
+     * digits of the phone number. Must stay in line with the backfill in customer_details_table.xml.
+     * <p>
+     * A customer with neither gets no key, so they always get a row of their own rather than sharing one with
+     * every other anonymous customer.
+     *
+     * @param email the customer's email
+     * @param phone the customer's phone number
+     * @return the normalised customer key, or null if both are blank
+     */
+    public static String keyOf(String email, String phone) {
+        String normalisedEmail = email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+        String normalisedPhone = phone == null ? "" : phone.replaceAll("[^0-9]", "");
+        if (normalisedEmail.isEmpty() && normalisedPhone.isEmpty()) {
+            return null;
+        }
+        return normalisedEmail + "|" + normalisedPhone;
+    }
+
 }
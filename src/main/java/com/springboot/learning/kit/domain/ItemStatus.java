@@ -1,5 +1,15 @@
 package com.springboot.learning.kit.domain;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The lifecycle of an order item. New items start as PROCESSING, and each status may only move on to the ones
+ * listed in the transition table below; REFUNDED and COMPLETED are final.
+ */
 public enum ItemStatus {
     PROCESSING,
     SHIPPED,
@@ -11,6 +21,27 @@ public enum ItemStatus {
     PENDING,
     COMPLETED;
 
+    private static final Map<ItemStatus, Set<ItemStatus>> NEXT = new EnumMap<>(ItemStatus.class);
+    private static final Map<ItemStatus, Set<ItemStatus>> PREVIOUS = new EnumMap<>(ItemStatus.class);
+
+    static {
+        NEXT.put(PENDING, EnumSet.of(PROCESSING, CANCELLED));
+        NEXT.put(PROCESSING, EnumSet.of(SHIPPED, CANCELLED));
+        NEXT.put(SHIPPED, EnumSet.of(DELIVERED, RETURNED));
+        NEXT.put(DELIVERED, EnumSet.of(COMPLETED, RETURNED, EXCHANGED));
+        NEXT.put(RETURNED, EnumSet.of(REFUNDED, EXCHANGED));
+        // The replacement for an exchanged item is shipped like a new one
+        NEXT.put(EXCHANGED, EnumSet.of(SHIPPED, COMPLETED));
+        NEXT.put(CANCELLED, EnumSet.of(REFUNDED));
+        NEXT.put(REFUNDED, EnumSet.noneOf(ItemStatus.class));
+        NEXT.put(COMPLETED, EnumSet.noneOf(ItemStatus.class));
+
+        for (ItemStatus status : values()) {
+            PREVIOUS.put(status, EnumSet.noneOf(ItemStatus.class));
+        }
+        NEXT.forEach((from, targets) -> targets.forEach(to -> PREVIOUS.get(to).add(from)));
+    }
+
     public static ItemStatus fromString(String status) {
         for (ItemStatus itemStatus : ItemStatus.values()) {
             if (itemStatus.name().equalsIgnoreCase(status)) {
@@ -20,5 +51,19 @@ public enum ItemStatus {
         throw new IllegalArgumentException("Unknown status: " + status);
     }
 
-}
+    /**
+     * @param next the status to move to
+     * @return true if an item in this status may move to next
+     */
+    public boolean canTransitionTo(ItemStatus next) {
+        return NEXT.get(this).contains(next);
+    }
 
+    /**
+     * @return the statuses an item may be in to move to this one
+     */
+    public Set<ItemStatus> getPreviousStatuses() {
+        return Collections.unmodifiableSet(PREVIOUS.get(this));
+    }
+
+}
@@ -2,6 +2,7 @@ package com.springboot.learning.kit.domain;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.springframework.data.domain.Persistable;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -12,12 +13,13 @@ import java.time.LocalDateTime;
 @Table(name = "orders")
 @NoArgsConstructor
 @AllArgsConstructor
-public class Order {
+public class Order implements Persistable<Long> {
     @Id
     @Column(name = "uuid")
     private Long uuid;
 
     @Column(name = "order_type")
+    @Enumerated(EnumType.STRING)
     private OrderType orderType;
 
     @JoinColumn(name = "customer_details_id")
@@ -34,4 +36,30 @@ public class Order {
 
     @Column(name = "order_created")
     private LocalDateTime orderCreated;
+
+    /**
+     * The UUID is assigned by the upstream service, so Spring Data can't tell a new order from an existing one
+     * and would otherwise merge() it, issuing a SELECT before every INSERT. Orders are insert-only, so we start
+     * out as new and flip the flag once Hibernate has persisted or loaded the entity.
+     */
+    @Transient
+    @Builder.Default
+    @Getter(AccessLevel.NONE)
+    private boolean newEntity = true;
+
+    @Override
+    public Long getId() {
+        return uuid;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newEntity = false;
+    }
 }
@@ -0,0 +1,16 @@
+package com.springboot.learning.kit.dto.projection;
+
+/**
+ * One row of the order status query: the order joined with one of its items.
+ */
+public interface OrderStatusRow {
+    Long getOrderId();
+
+    String getOrderType();
+
+    Long getProductId();
+
+    Integer getQuantity();
+
+    String getStatus();
+}
@@ -0,0 +1,19 @@
+package com.springboot.learning.kit.dto.projection;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The columns of an order needed for listings, read without loading the entity.
+ */
+public interface OrderSummaryRow {
+    Long getUuid();
+
+    String getOrderType();
+
+    BigDecimal getTotalAmount();
+
+    String getCurrency();
+
+    LocalDateTime getOrderCreated();
+}
@@ -0,0 +1,26 @@
+package com.springboot.learning.kit.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/**
+ * A request to replay the order placement dead letter queue of one broker onto its placement queue. Everything
+ * but the broker is optional.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DlqReplayRequest {
+    // rabbitmq or activemq
+    private String broker;
+    private Integer ratePerSecond;
+    private Integer parallelism;
+    private Long maxMessages;
+    // Only replay orders of this type
+    private String orderType;
+    // Only replay messages whose dead letter reason contains this text
+    private String errorReason;
+    // Count what would be replayed, leaving every message where it is
+    private boolean dryRun;
+}
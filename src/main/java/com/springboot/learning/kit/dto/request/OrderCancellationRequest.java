@@ -0,0 +1,20 @@
+package com.springboot.learning.kit.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A request to cancel every item of an order that hasn't shipped yet, as sent on the order cancellation queues.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderCancellationRequest {
+    private Long orderId;
+    private String reason;
+}
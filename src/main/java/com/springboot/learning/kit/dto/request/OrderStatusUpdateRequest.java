@@ -0,0 +1,21 @@
+package com.springboot.learning.kit.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A status change for one item of an order, as sent by the carrier feeds on the order status queues.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderStatusUpdateRequest {
+    private Long orderId;
+    private Long productId;
+    private String status;
+}
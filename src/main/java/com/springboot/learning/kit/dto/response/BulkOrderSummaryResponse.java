@@ -0,0 +1,16 @@
+package com.springboot.learning.kit.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkOrderSummaryResponse {
+    private int linesRead;
+    private int created;
+    private int duplicates;
+    private int rejected;
+    private int failed;
+}
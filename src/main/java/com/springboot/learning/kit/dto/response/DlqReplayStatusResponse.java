@@ -0,0 +1,26 @@
+package com.springboot.learning.kit.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DlqReplayStatusResponse {
+    private String jobId;
+    private String broker;
+    private String state;
+    private boolean dryRun;
+    private long read;
+    private long matched;
+    private long replayed;
+    private long skipped;
+    private long failed;
+    private double messagesPerSecond;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private String error;
+}
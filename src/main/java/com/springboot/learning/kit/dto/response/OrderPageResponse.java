@@ -0,0 +1,21 @@
+package com.springboot.learning.kit.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OrderPageResponse {
+    private List<OrderSummaryResponse> orders;
+
+    /**
+     * Pass as the after parameter to get the next page. Absent on the last page.
+     */
+    private String next;
+}
@@ -0,0 +1,21 @@
+package com.springboot.learning.kit.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OrderSummaryResponse {
+    private Long orderId;
+    private String orderType;
+    private BigDecimal totalAmount;
+    private String currency;
+    private LocalDateTime orderCreated;
+}
@@ -0,0 +1,7 @@
+package com.springboot.learning.kit.exception;
+
+public class ReplayAlreadyRunningException extends RuntimeException {
+    public ReplayAlreadyRunningException(String message) {
+        super(message);
+    }
+}
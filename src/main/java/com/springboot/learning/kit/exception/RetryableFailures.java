@@ -0,0 +1,27 @@
+package com.springboot.learning.kit.exception;
+
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+/**
+ * Tells failures caused by the database being unavailable or overloaded, which are worth retrying later, from
+ * failures caused by the data itself, which will fail the same way every time.
+ */
+public final class RetryableFailures {
+
+    private RetryableFailures() {
+    }
+
+    /**
+     * @param e the failure
+     * @return true if the same work may succeed once the database recovers
+     */
+    public static boolean isRetryable(Throwable e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof NonTransientDataAccessResourceException
+                || e instanceof CannotCreateTransactionException;
+    }
+}
@@ -0,0 +1,7 @@
+package com.springboot.learning.kit.exception;
+
+public class ServiceOverloadedException extends RuntimeException {
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,153 @@
+package com.springboot.learning.kit.inventory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongToIntFunction;
+
+/**
+ * In-memory record of the stock available per product. Reservations take stock with a compare-and-set on a
+ * counter per product, so orders for the same hot product never wait on a lock, and orders for different
+ * products don't touch each other at all.
+ * <p>
+ * Every change is also added to a pending delta per product, which the owner drains and writes back to the
+ * database in batches. The ledger assumes it is the only writer of stock while it's running.
+ * <p>
+ * Products the loader reports as {@link #UNTRACKED} have no stock kept for them, so they can always be ordered.
+ */
+public class StockLedger {
+
+    /**
+     * Returned by the loader for products whose stock isn't tracked.
+     */
+    public static final int UNTRACKED = -1;
+
+    private static final AtomicInteger UNTRACKED_COUNTER = new AtomicInteger(UNTRACKED);
+
+    private final Map<Long, AtomicInteger> available = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> pending = new ConcurrentHashMap<>();
+    private final LongToIntFunction loader;
+
+    /**
+     * @param loader reads the stock of a product the first time the product is reserved, or {@link #UNTRACKED}
+     */
+    public StockLedger(LongToIntFunction loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Reserves stock for every product in the order, or for none of them.
+     *
+     * @param quantities the quantity wanted per product id
+     * @return true if everything was reserved, false if any product didn't have enough stock
+     */
+    public boolean reserve(Map<Long, Integer> quantities) {
+        List<Map.Entry<Long, Integer>> taken = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            AtomicInteger counter = counter(line.getKey());
+            if (counter == UNTRACKED_COUNTER) {
+                continue;
+            }
+            if (!take(counter, line.getValue())) {
+                // Put back what was already taken, so a partly reserved order leaves nothing behind
+                taken.forEach(entry -> counter(entry.getKey()).addAndGet(entry.getValue()));
+                return false;
+            }
+            taken.add(line);
+        }
+
+        taken.forEach(entry -> pendingCounter(entry.getKey()).addAndGet(-entry.getValue()));
+        return true;
+    }
+
+    /**
+     * Returns stock that was reserved earlier, for example when the order couldn't be saved.
+     *
+     * @param quantities the quantity to return per product id
+     */
+    public void release(Map<Long, Integer> quantities) {
+        quantities.forEach((productId, quantity) -> {
+            AtomicInteger counter = counter(productId);
+            if (counter != UNTRACKED_COUNTER) {
+                counter.addAndGet(quantity);
+                pendingCounter(productId).addAndGet(quantity);
+            }
+        });
+    }
+
+    /**
+     * @param productId the product
+     * @return the stock currently available for the product, or {@link #UNTRACKED}
+     */
+    public int getAvailable(long productId) {
+        return counter(productId).get();
+    }
+
+    /**
+     * Takes every change made since the last drain. The changes are removed from the ledger, so the caller must
+     * {@link #restorePending(Map) restore} them if they can't be written.
+     *
+     * @return the net change in stock per product id, leaving out products that haven't changed
+     */
+    public Map<Long, Integer> drainPending() {
+        Map<Long, Integer> drained = new HashMap<>();
+        pending.forEach((productId, delta) -> {
+            int change = delta.getAndSet(0);
+            if (change != 0) {
+                drained.put(productId, change);
+            }
+        });
+        return drained;
+    }
+
+    /**
+     * Adds back changes taken by {@link #drainPending()} that couldn't be written, so the next drain retries them.
+     *
+     * @param deltas the net change in stock per product id
+     */
+    public void restorePending(Map<Long, Integer> deltas) {
+        deltas.forEach((productId, change) -> pendingCounter(productId).addAndGet(change));
+    }
+
+    /**
+     * @return the number of products with changes not yet drained
+     */
+    public int getPendingProducts() {
+        int count = 0;
+        for (AtomicInteger delta : pending.values()) {
+            if (delta.get() != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean take(AtomicInteger counter, int quantity) {
+        int current;
+        do {
+            current = counter.get();
+            if (current < quantity) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current - quantity));
+        return true;
+    }
+
+    private AtomicInteger counter(long productId) {
+        AtomicInteger counter = available.get(productId);
+        return counter != null
+                ? counter
+                : available.computeIfAbsent(productId, id -> {
+                    int stock = loader.applyAsInt(id);
+                    return stock == UNTRACKED ? UNTRACKED_COUNTER : new AtomicInteger(stock);
+                });
+    }
+
+    private AtomicInteger pendingCounter(long productId) {
+        AtomicInteger counter = pending.get(productId);
+        return counter != null ? counter : pending.computeIfAbsent(productId, id -> new AtomicInteger());
+    }
+}
@@ -0,0 +1,108 @@
+package com.springboot.learning.kit.job;
+
+import com.springboot.learning.kit.domain.CustomerAddress;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * One-off job that brings addresses written before interning in line with the new ones. It fingerprints every
+ * address that doesn't have one yet, keeps one row per fingerprint, points the orders of the duplicates at that
+ * row and deletes the duplicates.
+ * <p>
+ * Runs on startup when address.dedup.run-on-startup=true, in batches of one transaction each, so it can be
+ * stopped and re-run at any point.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "address.dedup.run-on-startup", havingValue = "true")
+public class AddressDedupJob implements ApplicationRunner {
+
+    @Value("${address.dedup.batch-size:5000}")
+    private int batchSize;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("Starting address fingerprint backfill, batch size {}", batchSize);
+        long fingerprinted = 0;
+        long merged = 0;
+
+        BatchResult result;
+        do {
+            result = transactionTemplate.execute(status -> processBatch());
+            fingerprinted += result.fingerprinted();
+            merged += result.merged();
+        } while (result.fingerprinted() + result.merged() > 0);
+
+        log.info("Address fingerprint backfill finished: {} addresses fingerprinted, {} duplicates merged",
+                fingerprinted, merged);
+    }
+
+    private BatchResult processBatch() {
+        // Rows come back in id order, so the first id seen for a fingerprint is the oldest one
+        Map<String, List<Long>> idsByFingerprint = new LinkedHashMap<>();
+        jdbcTemplate.query("""
+                        SELECT id, street, city, state, zip_code, country
+                        FROM customer_address
+                        WHERE fingerprint IS NULL
+                        ORDER BY id
+                        LIMIT ?""",
+                rs -> {
+                    String fingerprint = CustomerAddress.fingerprintOf(rs.getString("street"), rs.getString("city"),
+                            rs.getString("state"), rs.getString("zip_code"), rs.getString("country"));
+                    idsByFingerprint.computeIfAbsent(fingerprint, key -> new ArrayList<>()).add(rs.getLong("id"));
+                },
+                batchSize);
+
+        if (idsByFingerprint.isEmpty()) {
+            return new BatchResult(0, 0);
+        }
+
+        // Fingerprints already interned by live traffic or an earlier batch win over the legacy rows
+        Map<String, Long> internedIds = new HashMap<>();
+        String[] fingerprints = idsByFingerprint.keySet().toArray(String[]::new);
+        jdbcTemplate.query("SELECT fingerprint, id FROM customer_address WHERE fingerprint = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", fingerprints)),
+                rs -> {
+                    internedIds.put(rs.getString("fingerprint"), rs.getLong("id"));
+                });
+
+        List<Object[]> keepers = new ArrayList<>();
+        List<Object[]> duplicates = new ArrayList<>();
+        idsByFingerprint.forEach((fingerprint, ids) -> {
+            Long keeperId = internedIds.get(fingerprint);
+            List<Long> duplicateIds = ids;
+            if (keeperId == null) {
+                keeperId = ids.get(0);
+                keepers.add(new Object[]{fingerprint, keeperId});
+                duplicateIds = ids.subList(1, ids.size());
+            }
+            for (Long duplicateId : duplicateIds) {
+                duplicates.add(new Object[]{keeperId, duplicateId});
+            }
+        });
+
+        jdbcTemplate.batchUpdate("UPDATE customer_address SET fingerprint = ? WHERE id = ?", keepers);
+        jdbcTemplate.batchUpdate("UPDATE orders SET customer_address_id = ? WHERE customer_address_id = ?",
+                duplicates);
+        jdbcTemplate.batchUpdate("DELETE FROM customer_address WHERE id = ?",
+                duplicates.stream().map(pair -> new Object[]{pair[1]}).toList());
+
+        return new BatchResult(keepers.size(), duplicates.size());
+    }
+
+    private record BatchResult(int fingerprinted, int merged) {
+    }
+}
@@ -0,0 +1,190 @@
+package com.springboot.learning.kit.job;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the monthly partitions of orders and order_items in step with the clock. Partitions are created a few
+ * months ahead, so inserts never fall through to the default partition, and any month that did reach it gets its
+ * own partitions, with its rows moved out of the default. order_created is stored in UTC, so the months are worked
+ * out in UTC as well.
+ * <p>
+ * Retention is opt-in with order.partition.retention.enabled: months older than the retention period are then
+ * detached, removing them from every query and from autovacuum, and their order_keys rows are deleted, so the
+ * orders can no longer be looked up by UUID. Detached partitions are left in place as plain tables to be archived,
+ * unless order.partition.drop-detached is set. Detaching briefly locks orders and order_items against writes, so it
+ * runs in its own transaction per month.
+ * Each step takes an advisory lock, so only one instance does the work when several are running.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "order.partition.maintenance.enabled", havingValue = "true", matchIfMissing = true)
+public class OrderPartitionMaintenanceJob {
+
+    private static final Pattern ORDERS_PARTITION = Pattern.compile("orders_p(\\d{4})_(\\d{2})");
+    private static final long MAINTENANCE_LOCK = 0x6f72646572735f70L;
+
+    @Value("${order.partition.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${order.partition.retention.enabled:false}")
+    private boolean retentionEnabled;
+
+    @Value("${order.partition.retention-months:24}")
+    private int retentionMonths;
+
+    @Value("${order.partition.check-interval-hours:6}")
+    private long checkIntervalHours;
+
+    @Value("${order.partition.drop-detached:false}")
+    private boolean dropDetached;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private ScheduledExecutorService scheduler;
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-partition-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::run, 0, checkIntervalHours, TimeUnit.HOURS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    void run() {
+        try {
+            createUpcomingPartitions();
+            if (retentionEnabled) {
+                detachExpiredPartitions();
+            }
+        } catch (Exception e) {
+            log.error("Order partition maintenance failed, will retry in {} hours", checkIntervalHours, e);
+        }
+    }
+
+    private void createUpcomingPartitions() {
+        LocalDate thisMonth = YearMonth.now(ZoneOffset.UTC).atDay(1);
+        LocalDate lastMonth = thisMonth.plusMonths(monthsAhead);
+        Integer created = transactionTemplate.execute(status -> {
+            lock();
+            int count = jdbcTemplate.queryForObject("SELECT ensure_order_partitions(?, ?)", Integer.class,
+                    thisMonth, lastMonth);
+            // Orders that fell through to the default partition, say while maintenance was off, are moved into
+            // partitions of their own
+            List<LocalDate> strayMonths = jdbcTemplate.queryForList("""
+                    SELECT DISTINCT date_trunc('month', order_created)::date
+                    FROM orders_default
+                    ORDER BY 1""", LocalDate.class);
+            for (LocalDate month : strayMonths) {
+                count += jdbcTemplate.queryForObject("SELECT ensure_order_partitions(?, ?)", Integer.class,
+                        month, month);
+            }
+            return count;
+        });
+        if (created != null && created > 0) {
+            log.info("Created {} monthly order partitions up to {}", created, lastMonth);
+        }
+    }
+
+    private void detachExpiredPartitions() {
+        YearMonth oldestKept = YearMonth.now(ZoneOffset.UTC).minusMonths(retentionMonths);
+        List<String> partitions = jdbcTemplate.queryForList("""
+                SELECT c.relname
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'orders'::regclass
+                ORDER BY c.relname""", String.class);
+
+        for (String partition : partitions) {
+            Matcher matcher = ORDERS_PARTITION.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            if (month.isBefore(oldestKept)) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    lock();
+                    detach(month);
+                });
+            }
+        }
+    }
+
+    private void detach(YearMonth month) {
+        String suffix = String.format("p%04d_%02d", month.getYear(), month.getMonthValue());
+        String ordersPartition = "orders_" + suffix;
+        String itemsPartition = "order_items_" + suffix;
+
+        // Items go first, so nothing left in order_items references the orders being detached
+        if (isPartitionOf(itemsPartition, "order_items")) {
+            jdbcTemplate.execute("ALTER TABLE order_items DETACH PARTITION " + itemsPartition);
+        }
+        // The detached items keep their own copy of the foreign key to orders, which would block the next step
+        if (tableExists(itemsPartition)) {
+            List<String> foreignKeys = jdbcTemplate.queryForList(
+                    "SELECT conname FROM pg_constraint WHERE conrelid = ?::regclass AND contype = 'f'",
+                    String.class, itemsPartition);
+            for (String foreignKey : foreignKeys) {
+                jdbcTemplate.execute("ALTER TABLE " + itemsPartition + " DROP CONSTRAINT \""
+                        + foreignKey.replace("\"", "\"\"") + "\"");
+            }
+        }
+        if (isPartitionOf(ordersPartition, "orders")) {
+            jdbcTemplate.execute("ALTER TABLE orders DETACH PARTITION " + ordersPartition);
+        }
+
+        int keys = jdbcTemplate.update("DELETE FROM order_keys WHERE order_created < ?",
+                month.plusMonths(1).atDay(1).atStartOfDay());
+
+        if (dropDetached) {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + itemsPartition);
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + ordersPartition);
+        }
+        log.info("Detached{} order partitions for {}, removed {} order keys", dropDetached ? " and dropped" : "",
+                month, keys);
+    }
+
+    private boolean tableExists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class,
+                table));
+    }
+
+    private boolean isPartitionOf(String partition, String parent) {
+        return tableExists(partition) && Boolean.TRUE.equals(jdbcTemplate.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM pg_inherits WHERE inhrelid = ?::regclass AND inhparent = ?::regclass)""",
+                Boolean.class, partition, parent));
+    }
+
+    private void lock() {
+        jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + MAINTENANCE_LOCK + ")");
+    }
+}
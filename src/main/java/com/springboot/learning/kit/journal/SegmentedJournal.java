@@ -0,0 +1,382 @@
+package com.springboot.learning.kit.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of records kept in a directory of memory-mapped segment files. Writers append from any
+ * thread; a single reader polls the records in order and commits what it has handled, which is saved in a
+ * checkpoint file. Reopening the journal picks up at the last checkpoint, so records that were appended but not
+ * committed are read again. Segments that have been read past entirely are deleted on commit.
+ * <p>
+ * Each record is a 4 byte length, a 4 byte CRC32 of the payload and the payload. The length is written last, and
+ * records that fail their CRC when a segment is reopened are taken to be the end of the journal, so a write torn
+ * by a crash is dropped rather than replayed.
+ * <p>
+ * Writes to a mapping survive the process dying as soon as they're made; the {@link FsyncPolicy} only decides how
+ * much can be lost if the whole machine goes down.
+ */
+@Slf4j
+public class SegmentedJournal implements AutoCloseable {
+
+    /**
+     * When appended records are forced to disk.
+     */
+    public enum FsyncPolicy {
+        /** Before each append returns. */
+        ALWAYS,
+        /** Whenever {@link #sync()} is called, typically on a timer. */
+        INTERVAL,
+        /** Only when the operating system gets round to it, or a segment is full. */
+        NEVER
+    }
+
+    /**
+     * A record read from the journal.
+     *
+     * @param sequence the position of the record in the journal, starting from 0
+     * @param payload  the bytes that were appended
+     * @param next     where the reader carries on from after this record
+     */
+    public record Entry(long sequence, byte[] payload, Position next) {
+    }
+
+    /**
+     * A place in the journal, as saved in the checkpoint.
+     */
+    public record Position(long segmentBase, int offset, long sequence) {
+    }
+
+    private static final int HEADER_SIZE = 8;
+    private static final int END_OF_SEGMENT = -1;
+    private static final int CHECKPOINT_SIZE = 3 * Long.BYTES + Integer.BYTES;
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final FileChannel checkpointChannel;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    // Written under the append lock, read by the reader and the sync timer
+    private volatile Segment tail;
+    private volatile long appendedSequence;
+    private long nextSequence;
+
+    // Owned by the single reader
+    private Segment readSegment;
+    private int readOffset;
+    private long readSequence;
+    private volatile Position committed;
+
+    /**
+     * Opens the journal in the given directory, creating it if needed.
+     *
+     * @param directory   where the segments and checkpoint are kept
+     * @param segmentSize the size of each segment file in bytes, which is also the largest record allowed
+     * @param fsyncPolicy when appended records are forced to disk
+     */
+    public SegmentedJournal(Path directory, int segmentSize, FsyncPolicy fsyncPolicy) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+
+        Files.createDirectories(directory);
+        this.checkpointChannel = FileChannel.open(directory.resolve(CHECKPOINT_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        openSegments();
+        recoverTail();
+        recoverReader();
+    }
+
+    /**
+     * Appends a record to the end of the journal.
+     *
+     * @param payload the bytes to append
+     * @return the sequence of the record
+     */
+    public synchronized long append(byte[] payload) {
+        if (payload.length == 0) {
+            throw new IllegalArgumentException("Cannot append an empty record");
+        }
+        int recordSize = HEADER_SIZE + payload.length;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit in a journal segment");
+        }
+        if (tail.writeOffset + recordSize > tail.capacity()) {
+            roll();
+        }
+
+        Segment segment = tail;
+        int offset = segment.writeOffset;
+        segment.buffer.putInt(offset + Integer.BYTES, checksum(payload));
+        segment.buffer.put(offset + HEADER_SIZE, payload);
+        segment.buffer.putInt(offset, payload.length);
+        segment.writeOffset += recordSize;
+
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            segment.buffer.force(offset, recordSize);
+        }
+
+        long sequence = nextSequence++;
+        // Publishes the record to the reader
+        appendedSequence = nextSequence;
+        return sequence;
+    }
+
+    /**
+     * Forces everything appended to the current segment to disk. Earlier segments are forced when they fill up.
+     */
+    public void sync() {
+        tail.buffer.force();
+    }
+
+    /**
+     * Reads the next records after the last one polled. Only one thread may poll.
+     *
+     * @param maxEntries the most records to return
+     * @return the records, or an empty list if the reader has caught up
+     */
+    public List<Entry> poll(int maxEntries) {
+        List<Entry> entries = new ArrayList<>(Math.min(maxEntries, 1024));
+        long available = appendedSequence;
+
+        while (entries.size() < maxEntries && readSequence < available) {
+            int length = readOffset + HEADER_SIZE <= readSegment.capacity()
+                    ? readSegment.buffer.getInt(readOffset)
+                    : END_OF_SEGMENT;
+            if (length <= 0 || readOffset + HEADER_SIZE + length > readSegment.capacity()) {
+                // The writer rolled over, so the next record is at the start of the next segment
+                readSegment = segments.higherEntry(readSegment.base).getValue();
+                readOffset = 0;
+                continue;
+            }
+
+            byte[] payload = new byte[length];
+            readSegment.buffer.get(readOffset + HEADER_SIZE, payload);
+            readOffset += HEADER_SIZE + length;
+            readSequence++;
+            entries.add(new Entry(readSequence - 1, payload, new Position(readSegment.base, readOffset, readSequence)));
+        }
+        return entries;
+    }
+
+    /**
+     * Marks everything up to and including the given record as handled. It won't be read again after a restart.
+     *
+     * @param entry the last record handled
+     */
+    public void commit(Entry entry) throws IOException {
+        Position position = entry.next();
+        writeCheckpoint(position);
+        committed = position;
+
+        // Segments before the one the reader is in won't be read again
+        for (Map.Entry<Long, Segment> consumed : segments.headMap(position.segmentBase()).entrySet()) {
+            segments.remove(consumed.getKey());
+            consumed.getValue().delete();
+        }
+    }
+
+    /**
+     * Moves the reader back to the last commit, so the records polled since then are read again.
+     */
+    public void rewind() {
+        moveReaderTo(committed);
+    }
+
+    /**
+     * @return the number of records appended but not yet committed
+     */
+    public long getLag() {
+        return appendedSequence - committed.sequence();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+            segment.channel.close();
+        }
+        checkpointChannel.close();
+    }
+
+    private void openSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList()) {
+                String name = path.getFileName().toString();
+                long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(base, Segment.open(path, base, (int) Math.max(Files.size(path), segmentSize)));
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, Segment.open(segmentPath(0), 0, segmentSize));
+        }
+        tail = segments.lastEntry().getValue();
+    }
+
+    /**
+     * Finds the end of the last segment by walking its records, and clears anything after the last good one.
+     */
+    private void recoverTail() {
+        Segment segment = tail;
+        int offset = 0;
+        long count = 0;
+        while (offset + HEADER_SIZE <= segment.capacity()) {
+            int length = segment.buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_SIZE + length > segment.capacity()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            segment.buffer.get(offset + HEADER_SIZE, payload);
+            if (segment.buffer.getInt(offset + Integer.BYTES) != checksum(payload)) {
+                log.warn("Dropping torn record at offset {} of journal segment {}", offset, segment.path);
+                break;
+            }
+            offset += HEADER_SIZE + length;
+            count++;
+        }
+
+        // Clear what's left of a torn write, so it can't be mistaken for a record once appends carry on over it
+        byte[] zeros = new byte[4096];
+        for (int clear = offset; clear < segment.capacity(); clear += zeros.length) {
+            segment.buffer.put(clear, zeros, 0, Math.min(zeros.length, segment.capacity() - clear));
+        }
+        segment.writeOffset = offset;
+        nextSequence = segment.base + count;
+        appendedSequence = nextSequence;
+    }
+
+    private void recoverReader() throws IOException {
+        Position checkpoint = readCheckpoint();
+        Segment first = segments.firstEntry().getValue();
+        if (checkpoint == null || !segments.containsKey(checkpoint.segmentBase())) {
+            checkpoint = new Position(first.base, 0, first.base);
+        } else if (checkpoint.sequence() > nextSequence) {
+            // The checkpoint got to disk but the records it covers didn't
+            checkpoint = new Position(tail.base, tail.writeOffset, nextSequence);
+        }
+
+        committed = checkpoint;
+        moveReaderTo(checkpoint);
+        for (Map.Entry<Long, Segment> consumed : segments.headMap(checkpoint.segmentBase()).entrySet()) {
+            segments.remove(consumed.getKey());
+            consumed.getValue().delete();
+        }
+    }
+
+    private void moveReaderTo(Position position) {
+        readSegment = segments.get(position.segmentBase());
+        readOffset = position.offset();
+        readSequence = position.sequence();
+    }
+
+    private void roll() {
+        Segment full = tail;
+        if (full.writeOffset + Integer.BYTES <= full.capacity()) {
+            full.buffer.putInt(full.writeOffset, END_OF_SEGMENT);
+        }
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            full.buffer.force();
+        }
+
+        try {
+            Segment next = Segment.open(segmentPath(nextSequence), nextSequence, segmentSize);
+            segments.put(next.base, next);
+            tail = next;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create journal segment in " + directory, e);
+        }
+    }
+
+    private Position readCheckpoint() throws IOException {
+        if (checkpointChannel.size() < CHECKPOINT_SIZE) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_SIZE);
+        checkpointChannel.read(buffer, 0);
+        buffer.flip();
+        long segmentBase = buffer.getLong();
+        long offset = buffer.getLong();
+        long sequence = buffer.getLong();
+        if (buffer.getInt() != checksum(buffer.array(), 3 * Long.BYTES)) {
+            log.warn("Ignoring corrupt journal checkpoint in {}, replaying from the oldest segment", directory);
+            return null;
+        }
+        return new Position(segmentBase, (int) offset, sequence);
+    }
+
+    private void writeCheckpoint(Position position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_SIZE);
+        buffer.putLong(position.segmentBase()).putLong(position.offset()).putLong(position.sequence());
+        buffer.putInt(checksum(buffer.array(), 3 * Long.BYTES));
+        buffer.flip();
+        checkpointChannel.write(buffer, 0);
+        checkpointChannel.force(false);
+    }
+
+    private Path segmentPath(long base) {
+        return directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+
+    private static int checksum(byte[] bytes) {
+        return checksum(bytes, bytes.length);
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static final class Segment {
+
+        private final Path path;
+        private final long base;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writeOffset;
+
+        private Segment(Path path, long base, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.base = base;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path path, long base, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(path, base, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        void delete() {
+            try {
+                channel.close();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Failed to delete journal segment {}", path, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.springboot.learning.kit.pool;
+
+import com.springboot.learning.kit.exception.ServiceOverloadedException;
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resizes the primary connection pool between datasource.pool.min-size and datasource.pool.max-size as load
+ * changes, and turns new work away once the pool is saturated. Saturation is measured against the pool's current
+ * size, whether it was shrunk because the database is slow or never resized because adaptive sizing is off.
+ * <p>
+ * Every adjust interval it looks at how long threads waited for a connection, how many connections were in use
+ * at the peak, and how long each connection was held, which is the database latency as the application sees it.
+ * The pool grows while threads are waiting and the database is keeping up, and shrinks when connections sit
+ * idle. When the hold time climbs well above its baseline the database itself is the bottleneck, and more
+ * connections would only add to its contention, so the pool shrinks instead.
+ */
+@Slf4j
+@Component
+public class ConnectionPoolController {
+
+    private static final String POOL_NAME = "primary";
+
+    @Value("${datasource.pool.min-size:10}")
+    private int minSize;
+
+    @Value("${datasource.pool.max-size:50}")
+    private int maxSize;
+
+    @Value("${datasource.pool.adaptive.enabled:true}")
+    private boolean adaptive;
+
+    @Value("${datasource.pool.adaptive.sample-interval-ms:500}")
+    private long sampleIntervalMillis;
+
+    @Value("${datasource.pool.adaptive.adjust-interval-ms:5000}")
+    private long adjustIntervalMillis;
+
+    @Value("${datasource.pool.adaptive.target-wait-ms:5}")
+    private double targetWaitMillis;
+
+    @Value("${datasource.pool.adaptive.latency-factor:2.0}")
+    private double latencyFactor;
+
+    @Value("${datasource.pool.saturation.max-waiting:50}")
+    private int maxWaitingThreads;
+
+    private final HikariDataSource primaryDataSource;
+    private final MeterRegistry meterRegistry;
+
+    private ScheduledExecutorService scheduler;
+    private Counter rejections;
+
+    // Only touched by the scheduler thread, apart from the volatile ones read by the gauges
+    private int peakActive;
+    private long samplesSinceAdjust;
+    private TimerWindow acquireTimes;
+    private TimerWindow usageTimes;
+    private volatile double baselineUsageMillis = Double.NaN;
+    private volatile double recentUsageMillis = Double.NaN;
+
+    public ConnectionPoolController(@Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+                                    MeterRegistry meterRegistry) {
+        this.primaryDataSource = primaryDataSource;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void start() {
+        rejections = meterRegistry.counter("db.pool.rejections", "pool", POOL_NAME);
+        acquireTimes = new TimerWindow(meterRegistry, "hikaricp.connections.acquire", "pool", POOL_NAME);
+        usageTimes = new TimerWindow(meterRegistry, "hikaricp.connections.usage", "pool", POOL_NAME);
+        Gauge.builder("db.pool.target.size", primaryDataSource, HikariDataSource::getMaximumPoolSize)
+                .tag("pool", POOL_NAME)
+                .description("Maximum size the pool is currently allowed to grow to")
+                .register(meterRegistry);
+        Gauge.builder("db.pool.latency.baseline", this, controller -> controller.baselineUsageMillis)
+                .tag("pool", POOL_NAME)
+                .baseUnit("milliseconds")
+                .description("Usual time a connection is held for, which the recent time is compared against")
+                .register(meterRegistry);
+
+        if (!adaptive) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-controller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sample, sampleIntervalMillis, sampleIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Turns new work away while too many threads are already queued for a connection, rather than letting it
+     * wait out the connection timeout and fail anyway.
+     *
+     * @throws ServiceOverloadedException if the pool is saturated
+     */
+    public void checkCapacity() {
+        if (isSaturated()) {
+            rejections.increment();
+            throw new ServiceOverloadedException("Database connection pool is saturated");
+        }
+    }
+
+    /**
+     * @return true if every connection the pool is currently allowed is in use and too many threads are waiting
+     * for one
+     */
+    public boolean isSaturated() {
+        HikariPoolMXBean pool = primaryDataSource.getHikariPoolMXBean();
+        return pool != null
+                && pool.getActiveConnections() >= primaryDataSource.getMaximumPoolSize()
+                && pool.getThreadsAwaitingConnection() >= maxWaitingThreads;
+    }
+
+    /**
+     * @return the share of the pool's current size that is in use right now, from 0 to 1
+     */
+    public double getUtilization() {
+        HikariPoolMXBean pool = primaryDataSource.getHikariPoolMXBean();
+        return pool == null ? 0 : (double) pool.getActiveConnections() / primaryDataSource.getMaximumPoolSize();
+    }
+
+    /**
+     * @return how many times longer connections have recently been held than usual, 1 when the database is
+     * keeping up and higher as it slows down
+     */
+    public double getLatencyRatio() {
+        double baseline = baselineUsageMillis;
+        double recent = recentUsageMillis;
+        return Double.isNaN(baseline) || Double.isNaN(recent) || baseline <= 0 ? 1 : recent / baseline;
+    }
+
+    private void sample() {
+        try {
+            HikariPoolMXBean pool = primaryDataSource.getHikariPoolMXBean();
+            if (pool == null) {
+                // The pool starts on the first connection request
+                return;
+            }
+            peakActive = Math.max(peakActive, pool.getActiveConnections());
+            if (++samplesSinceAdjust * sampleIntervalMillis >= adjustIntervalMillis) {
+                adjust(pool);
+                peakActive = 0;
+                samplesSinceAdjust = 0;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to sample connection pool", e);
+        }
+    }
+
+    private void adjust(HikariPoolMXBean pool) {
+        double waitMillis = acquireTimes.meanMillis();
+        double usageMillis = usageTimes.meanMillis();
+        if (Double.isNaN(usageMillis)) {
+            return;
+        }
+
+        recentUsageMillis = usageMillis;
+        boolean databaseSlow = !Double.isNaN(baselineUsageMillis) && usageMillis > baselineUsageMillis * latencyFactor;
+        if (!databaseSlow) {
+            // The baseline only learns from healthy periods, so a slow spell doesn't become the new normal
+            baselineUsageMillis = Double.isNaN(baselineUsageMillis)
+                    ? usageMillis
+                    : baselineUsageMillis * 0.9 + usageMillis * 0.1;
+        }
+
+        HikariConfigMXBean config = primaryDataSource.getHikariConfigMXBean();
+        int size = config.getMaximumPoolSize();
+        boolean waiting = pool.getThreadsAwaitingConnection() > 0 || waitMillis > targetWaitMillis;
+
+        int newSize = size;
+        if (databaseSlow) {
+            newSize = Math.max(minSize, size - Math.max(1, size / 8));
+        } else if (waiting) {
+            newSize = Math.min(maxSize, size + Math.max(1, size / 4));
+        } else if (peakActive < size / 2) {
+            newSize = Math.max(minSize, size - Math.max(1, size / 8));
+        }
+
+        if (newSize != size) {
+            config.setMaximumPoolSize(newSize);
+            meterRegistry.counter("db.pool.resizes", "pool", POOL_NAME, "direction", newSize > size ? "up" : "down")
+                    .increment();
+            log.info("Resized {} connection pool from {} to {}: wait {} ms, peak active {}, hold time {} ms "
+                            + "against a baseline of {} ms", POOL_NAME, size, newSize, format(waitMillis), peakActive,
+                    format(usageMillis), format(baselineUsageMillis));
+        }
+    }
+
+    private static String format(double millis) {
+        return String.format("%.1f", millis);
+    }
+}
@@ -0,0 +1,57 @@
+package com.springboot.learning.kit.pool;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.search.Search;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The mean of a Micrometer timer over successive windows, each window being the time between two calls to
+ * {@link #meanMillis()}. The timer is looked up on every call, as some are only registered once the component
+ * recording them first runs. Not thread safe, meant for a single sampling thread.
+ */
+public class TimerWindow {
+
+    private final MeterRegistry meterRegistry;
+    private final String name;
+    private final String[] tags;
+
+    private long lastCount;
+    private double lastTotalMillis;
+
+    /**
+     * @param meterRegistry the registry holding the timer
+     * @param name          the name of the timer
+     * @param tags          tag keys and values the timer must have
+     */
+    public TimerWindow(MeterRegistry meterRegistry, String name, String... tags) {
+        this.meterRegistry = meterRegistry;
+        this.name = name;
+        this.tags = tags;
+    }
+
+    /**
+     * Closes the current window and starts the next.
+     *
+     * @return the mean time recorded in the window that just closed, or NaN if nothing was recorded
+     */
+    public double meanMillis() {
+        Search search = meterRegistry.find(name);
+        if (tags.length > 0) {
+            search = search.tags(tags);
+        }
+        Timer timer = search.timer();
+        if (timer == null) {
+            return Double.NaN;
+        }
+
+        long count = timer.count();
+        double totalMillis = timer.totalTime(TimeUnit.MILLISECONDS);
+        long deltaCount = count - lastCount;
+        double deltaMillis = totalMillis - lastTotalMillis;
+        lastCount = count;
+        lastTotalMillis = totalMillis;
+        return deltaCount > 0 ? deltaMillis / deltaCount : Double.NaN;
+    }
+}
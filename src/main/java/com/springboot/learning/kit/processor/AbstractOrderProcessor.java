@@ -2,11 +2,7 @@ package com.springboot.learning.kit.processor;
 
 import com.springboot.learning.kit.domain.OrderType;
 import com.springboot.learning.kit.dto.request.OrderRequest;
-import com.springboot.learning.kit.service.AddressService;
-import com.springboot.learning.kit.service.CustomerService;
-import com.springboot.learning.kit.service.OrderItemService;
-import com.springboot.learning.kit.service.OrderService;
-import jakarta.transaction.Transactional;
+import com.springboot.learning.kit.service.OrderBatchingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -14,10 +10,7 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 public abstract class AbstractOrderProcessor {
 
-    private final OrderService orderService;
-    private final CustomerService customerService;
-    private final AddressService addressService;
-    private final OrderItemService orderItemService;
+    private final OrderBatchingService orderBatchingService;
 
     /**
      * Checks if this processor can handle the given order type.
@@ -26,6 +19,14 @@ public abstract class AbstractOrderProcessor {
      */
     public abstract boolean supports(OrderType orderType);
 
+    /**
+     * Does the processing specific to this type of order, short of saving it. Runs for every order however it
+     * ends up being saved: on its own by {@link #processOrder(OrderRequest)}, or together with other orders in a
+     * batch or by the journal flusher.
+     * @param order the order to process
+     */
+    public abstract void prepareOrder(OrderRequest order);
+
     /**
      * Processes the order.
      * @param order the order to process
@@ -34,19 +35,12 @@ public abstract class AbstractOrderProcessor {
 
     /**
      * Saves the order to the database.
-     * @Transactional ensures that the method is executed within a transaction.
+     * The write itself is delegated to {@link OrderBatchingService} so that it runs inside a transaction, either
+     * on its own or batched with other orders; a @Transactional method here would be bypassed as it's only ever
+     * called via super.saveOrder().
      * @param orderRequest the order request object
      */
-    @Transactional
     public void saveOrder(OrderRequest orderRequest) {
-        // Save customer details and address
-        long customerId = customerService.saveCustomerDetails(orderRequest.getCustomerDetails());
-        long addressId = addressService.saveCustomerAddress(orderRequest.getCustomerAddress());
-
-        // now save order as we've got customer and address IDs
-        orderService.saveNewOrder(orderRequest, customerId, addressId);
-
-        // now we can save order items
-        orderItemService.saveOrderItems(orderRequest.getOrderItems(), orderRequest.getUUID());
+        orderBatchingService.saveOrder(orderRequest);
     }
 }
@@ -2,10 +2,7 @@ package com.springboot.learning.kit.processor;
 
 import com.springboot.learning.kit.domain.OrderType;
 import com.springboot.learning.kit.dto.request.OrderRequest;
-import com.springboot.learning.kit.service.AddressService;
-import com.springboot.learning.kit.service.CustomerService;
-import com.springboot.learning.kit.service.OrderItemService;
-import com.springboot.learning.kit.service.OrderService;
+import com.springboot.learning.kit.service.OrderBatchingService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -13,19 +10,12 @@ import org.springframework.stereotype.Component;
 @Component
 public class OfflineOrderProcessor extends AbstractOrderProcessor {
 
-    private final OrderService orderService;
-    private final CustomerService customerService;
-    private final AddressService addressService;
-    private final OrderItemService orderItemService;
+    private final OrderBatchingService orderBatchingService;
 
-    public OfflineOrderProcessor(OrderService orderService, CustomerService customerService,
-                                 AddressService addressService, OrderItemService orderItemService) {
-        super(orderService, customerService, addressService, orderItemService);
+    public OfflineOrderProcessor(OrderBatchingService orderBatchingService) {
+        super(orderBatchingService);
 
-        this.orderService = orderService;
-        this.customerService = customerService;
-        this.addressService = addressService;
-        this.orderItemService = orderItemService;
+        this.orderBatchingService = orderBatchingService;
     }
 
     @Override
@@ -34,10 +24,15 @@ public class OfflineOrderProcessor extends AbstractOrderProcessor {
     }
 
     @Override
-    public void processOrder(OrderRequest orderRequest) {
+    public void prepareOrder(OrderRequest orderRequest) {
         log.info("Processing offline order: {}", orderRequest.getUUID());
 
         // Perform any specific processing for offline orders here
+    }
+
+    @Override
+    public void processOrder(OrderRequest orderRequest) {
+        prepareOrder(orderRequest);
 
         // Call the saveOrder method from the parent class to save the order
         super.saveOrder(orderRequest);
@@ -0,0 +1,30 @@
+package com.springboot.learning.kit.processor;
+
+import com.springboot.learning.kit.domain.OrderType;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Picks the processor for an order, for every part of the write path that hands orders to processors.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderProcessors {
+
+    private final Set<AbstractOrderProcessor> orderProcessors;
+
+    /**
+     * @param orderRequest the order
+     * @return the processor for the order's type
+     * @throws IllegalArgumentException if no processor supports the order's type
+     */
+    public AbstractOrderProcessor forOrder(OrderRequest orderRequest) {
+        return orderProcessors.stream()
+                .filter(processor -> processor.supports(OrderType.valueOf(orderRequest.getOrderType())))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No processor found for order type: " + orderRequest.getOrderType()));
+    }
+}
@@ -0,0 +1,217 @@
+package com.springboot.learning.kit.repository;
+
+import com.springboot.learning.kit.domain.CustomerAddress;
+import com.springboot.learning.kit.domain.CustomerDetails;
+import com.springboot.learning.kit.domain.ItemStatus;
+import com.springboot.learning.kit.dto.request.CustomerAddressRequest;
+import com.springboot.learning.kit.dto.request.CustomerDetailsRequest;
+import com.springboot.learning.kit.dto.request.OrderItemRequest;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads orders in bulk with the PostgreSQL COPY protocol. Rows are streamed into temporary staging tables and
+ * then moved into the real tables with set-based INSERT ... SELECT statements, so a chunk of thousands of orders
+ * costs a handful of round trips instead of several per order.
+ * <p>
+ * Must be called inside a transaction, as the staging tables are dropped on commit.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BulkOrderRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SequenceIdAllocator sequenceIdAllocator;
+
+    /**
+     * An order read from a bulk upload, along with the line it came from.
+     */
+    public record StagedOrder(int lineNumber, OrderRequest order) {
+    }
+
+    /**
+     * Loads the given orders, skipping any whose UUID already exists.
+     *
+     * @param orders the orders to load, with unique UUIDs
+     * @return the line numbers of the orders that were skipped as duplicates
+     */
+    public Set<Integer> insertOrders(List<StagedOrder> orders) {
+        createStagingTables();
+        copyIntoStaging(orders);
+
+        Set<Integer> duplicateLines = new HashSet<>(jdbcTemplate.queryForList("""
+                DELETE FROM stage_orders s
+                USING order_keys k
+                WHERE k.uuid = s.uuid
+                RETURNING s.line_number""", Integer.class));
+
+        // Repeat customers resolve to their existing row, including ones repeated within the chunk, and take the
+        // name from their last line. Customers without a key each keep the row id they were staged with.
+        jdbcTemplate.update("""
+                INSERT INTO customer_details (id, name, email, phone, customer_key)
+                SELECT DISTINCT ON (customer_key) customer_id, name, email, phone, customer_key
+                FROM stage_orders
+                WHERE customer_key IS NOT NULL
+                ORDER BY customer_key, line_number DESC
+                ON CONFLICT (customer_key) DO UPDATE SET name = EXCLUDED.name
+                WHERE customer_details.name IS DISTINCT FROM EXCLUDED.name""");
+        jdbcTemplate.update("""
+                INSERT INTO customer_details (id, name, email, phone, customer_key)
+                SELECT customer_id, name, email, phone, NULL
+                FROM stage_orders
+                WHERE customer_key IS NULL""");
+        jdbcTemplate.update("""
+                UPDATE stage_orders s
+                SET customer_id = c.id
+                FROM customer_details c
+                WHERE c.customer_key = s.customer_key""");
+        jdbcTemplate.update("""
+                INSERT INTO customer_address (id, street, city, state, zip_code, country, fingerprint)
+                SELECT DISTINCT ON (fingerprint) address_id, street, city, state, zip_code, country, fingerprint
+                FROM stage_orders
+                ORDER BY fingerprint, line_number
+                ON CONFLICT (fingerprint) DO NOTHING""");
+        jdbcTemplate.update("""
+                UPDATE stage_orders s
+                SET address_id = a.id
+                FROM customer_address a
+                WHERE a.fingerprint = s.fingerprint""");
+        jdbcTemplate.update("""
+                INSERT INTO orders (uuid, customer_details_id, customer_address_id, order_type, total_amount,
+                                    currency, order_created)
+                SELECT uuid, customer_id, address_id, order_type, total_amount, currency, timezone('UTC', now())
+                FROM stage_orders""");
+        // now() is fixed for the whole transaction, so the items get the same order_created, and partition, as
+        // their order
+        jdbcTemplate.update("""
+                INSERT INTO order_items (id, order_id, order_created, product_id, quantity, status, price_per_unit)
+                SELECT i.id, i.order_id, timezone('UTC', now()), i.product_id, i.quantity, ?, i.price_per_unit
+                FROM stage_order_items i
+                JOIN stage_orders s ON s.uuid = i.order_id""", ItemStatus.PROCESSING.name());
+
+        return duplicateLines;
+    }
+
+    private void createStagingTables() {
+        jdbcTemplate.execute("""
+                CREATE TEMP TABLE stage_orders (
+                    line_number  INT,
+                    uuid         BIGINT,
+                    order_type   VARCHAR(50),
+                    total_amount DECIMAL(19,4),
+                    currency     VARCHAR(3),
+                    customer_id  BIGINT,
+                    name         VARCHAR(255),
+                    email        VARCHAR(255),
+                    phone        VARCHAR(50),
+                    customer_key VARCHAR(320),
+                    address_id   BIGINT,
+                    street       VARCHAR(255),
+                    city         VARCHAR(100),
+                    state        VARCHAR(100),
+                    zip_code     VARCHAR(20),
+                    country      VARCHAR(100),
+                    fingerprint  VARCHAR(64)
+                ) ON COMMIT DROP""");
+        jdbcTemplate.execute("""
+                CREATE TEMP TABLE stage_order_items (
+                    id             BIGINT,
+                    order_id       BIGINT,
+                    product_id     BIGINT,
+                    quantity       INT,
+                    price_per_unit DECIMAL(19,4)
+                ) ON COMMIT DROP""");
+    }
+
+    private void copyIntoStaging(List<StagedOrder> orders) {
+        int itemCount = orders.stream().mapToInt(staged -> staged.order().getOrderItems().size()).sum();
+        long[] customerIds = sequenceIdAllocator.allocate("customer_details_seq", orders.size());
+        long[] addressIds = sequenceIdAllocator.allocate("customer_address_seq", orders.size());
+        long[] itemIds = sequenceIdAllocator.allocate("order_items_seq", itemCount);
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+
+            CopyIn orderCopy = copyManager.copyIn("""
+                    COPY stage_orders (line_number, uuid, order_type, total_amount, currency,
+                                       customer_id, name, email, phone, customer_key,
+                                       address_id, street, city, state, zip_code, country, fingerprint)
+                    FROM STDIN WITH (FORMAT csv)""");
+            try {
+                for (int i = 0; i < orders.size(); i++) {
+                    OrderRequest order = orders.get(i).order();
+                    CustomerDetailsRequest customer = order.getCustomerDetails();
+                    CustomerAddressRequest address = order.getCustomerAddress();
+                    writeRow(orderCopy, orders.get(i).lineNumber(), order.getUUID(), order.getOrderType(),
+                            order.getOrderAmount(), order.getCurrency(),
+                            customerIds[i], customer.getName(), customer.getEmail(), customer.getPhone(),
+                            CustomerDetails.keyOf(customer.getEmail(), customer.getPhone()),
+                            addressIds[i], address.getStreet(), address.getCity(), address.getState(),
+                            address.getZipCode(), address.getCountry(),
+                            CustomerAddress.fingerprintOf(address.getStreet(), address.getCity(), address.getState(),
+                                    address.getZipCode(), address.getCountry()));
+                }
+                orderCopy.endCopy();
+            } finally {
+                if (orderCopy.isActive()) {
+                    orderCopy.cancelCopy();
+                }
+            }
+
+            CopyIn itemCopy = copyManager.copyIn("""
+                    COPY stage_order_items (id, order_id, product_id, quantity, price_per_unit)
+                    FROM STDIN WITH (FORMAT csv)""");
+            try {
+                int itemIndex = 0;
+                for (StagedOrder staged : orders) {
+                    for (OrderItemRequest item : staged.order().getOrderItems()) {
+                        writeRow(itemCopy, itemIds[itemIndex++], staged.order().getUUID(), item.getProductId(),
+                                item.getQuantity(), item.getPricePerUnit());
+                    }
+                }
+                itemCopy.endCopy();
+            } finally {
+                if (itemCopy.isActive()) {
+                    itemCopy.cancelCopy();
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Writes one CSV row to the COPY stream. Text is always quoted, and nulls are left as unquoted empty fields,
+     * which is how COPY tells NULL apart from an empty string.
+     */
+    private static void writeRow(CopyIn copy, Object... values) throws SQLException {
+        StringBuilder row = new StringBuilder(256);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                row.append(',');
+            }
+            Object value = values[i];
+            if (value instanceof String text) {
+                row.append('"').append(text.replace("\"", "\"\"")).append('"');
+            } else if (value instanceof BigDecimal decimal) {
+                row.append(decimal.toPlainString());
+            } else if (value != null) {
+                row.append(value);
+            }
+        }
+        byte[] bytes = row.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+    }
+}
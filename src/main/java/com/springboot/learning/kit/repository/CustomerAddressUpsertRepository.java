@@ -0,0 +1,14 @@
+package com.springboot.learning.kit.repository;
+
+import com.springboot.learning.kit.domain.CustomerAddress;
+
+public interface CustomerAddressUpsertRepository {
+
+    /**
+     * Inserts the address unless one with the same fingerprint already exists.
+     *
+     * @param customerAddress the address to insert
+     * @return the id of the new or existing address
+     */
+    UpsertResult upsertAddress(CustomerAddress customerAddress);
+}
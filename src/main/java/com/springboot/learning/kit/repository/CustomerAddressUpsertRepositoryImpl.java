@@ -0,0 +1,47 @@
+package com.springboot.learning.kit.repository;
+
+import com.springboot.learning.kit.domain.CustomerAddress;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Same approach as {@link CustomerDetailsUpsertRepositoryImpl}, keyed on the address fingerprint.
+ */
+@RequiredArgsConstructor
+public class CustomerAddressUpsertRepositoryImpl implements CustomerAddressUpsertRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SequenceIdAllocator sequenceIdAllocator;
+
+    @Override
+    public UpsertResult upsertAddress(CustomerAddress customerAddress) {
+        long newId = sequenceIdAllocator.next("customer_address_seq");
+        String fingerprint = customerAddress.getFingerprint();
+
+        List<UpsertResult> results = jdbcTemplate.query("""
+                        WITH inserted AS (
+                            INSERT INTO customer_address (id, street, city, state, zip_code, country, fingerprint)
+                            VALUES (?, ?, ?, ?, ?, ?, ?)
+                            ON CONFLICT (fingerprint) DO NOTHING
+                            RETURNING id
+                        )
+                        SELECT id, TRUE AS inserted FROM inserted
+                        UNION ALL
+                        SELECT id, FALSE AS inserted FROM customer_address WHERE fingerprint = ?
+                        LIMIT 1""",
+                (rs, rowNum) -> new UpsertResult(rs.getLong("id"), rs.getBoolean("inserted")),
+                newId, customerAddress.getStreet(), customerAddress.getCity(), customerAddress.getState(),
+                customerAddress.getZipCode(), customerAddress.getCountry(), fingerprint, fingerprint);
+
+        if (!results.isEmpty()) {
+            return results.get(0);
+        }
+
+        // A concurrent insert of the same address committed after this statement took its snapshot
+        Long existingId = jdbcTemplate.queryForObject(
+                "SELECT id FROM customer_address WHERE fingerprint = ?", Long.class, fingerprint);
+        return new UpsertResult(existingId, false);
+    }
+}
@@ -5,6 +5,6 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface CustomerDetailsRepository extends JpaRepository<CustomerDetails, Long> {
+public interface CustomerDetailsRepository extends JpaRepository<CustomerDetails, Long>, CustomerDetailsUpsertRepository {
 
 }
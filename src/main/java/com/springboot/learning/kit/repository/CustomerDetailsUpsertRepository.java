@@ -0,0 +1,15 @@
+package com.springboot.learning.kit.repository;
+
+import com.springboot.learning.kit.domain.CustomerDetails;
+
+public interface CustomerDetailsUpsertRepository {
+
+    /**
+     * Inserts the customer unless one with the same customer key already exists, in which case its name is
+     * brought up to date. Customers without a key are always inserted.
+     *
+     * @param customerDetails the customer to insert or update
+     * @return the id of the new or existing customer
+     */
+    UpsertResult upsertCustomer(CustomerDetails customerDetails);
+}
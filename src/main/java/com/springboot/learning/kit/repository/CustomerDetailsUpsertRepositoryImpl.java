@@ -0,0 +1,49 @@
+package com.springboot.learning.kit.repository;
+
+import com.springboot.learning.kit.domain.CustomerDetails;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Runs the upsert through JDBC on the transaction's connection rather than as a native Hibernate query, which
+ * would flush the session first and break up the insert batches of the rest of the order.
+ */
+@RequiredArgsConstructor
+public class CustomerDetailsUpsertRepositoryImpl implements CustomerDetailsUpsertRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SequenceIdAllocator sequenceIdAllocator;
+
+    @Override
+    public UpsertResult upsertCustomer(CustomerDetails customerDetails) {
+        long newId = sequenceIdAllocator.next("customer_details_seq");
+        String customerKey = customerDetails.getCustomerKey();
+
+        List<UpsertResult> results = jdbcTemplate.query("""
+                        WITH upserted AS (
+                            INSERT INTO customer_details (id, name, email, phone, customer_key)
+                            VALUES (?, ?, ?, ?, ?)
+                            ON CONFLICT (customer_key) DO UPDATE SET name = EXCLUDED.name
+                            WHERE customer_details.name IS DISTINCT FROM EXCLUDED.name
+                            RETURNING id, xmax = 0 AS inserted
+                        )
+                        SELECT id, inserted FROM upserted
+                        UNION ALL
+                        SELECT id, FALSE AS inserted FROM customer_details WHERE customer_key = ?
+                        LIMIT 1""",
+                (rs, rowNum) -> new UpsertResult(rs.getLong("id"), rs.getBoolean("inserted")),
+                newId, customerDetails.getName(), customerDetails.getEmail(), customerDetails.getPhone(),
+                customerKey, customerKey);
+
+        if (!results.isEmpty()) {
+            return results.get(0);
+        }
+
+        // A concurrent insert of the same customer committed after this statement took its snapshot
+        Long existingId = jdbcTemplate.queryForObject(
+                "SELECT id FROM customer_details WHERE customer_key = ?", Long.class, customerKey);
+        return new UpsertResult(existingId, false);
+    }
+}
@@ -0,0 +1,97 @@
+package com.springboot.learning.kit.repository;
+
+import com.springboot.learning.kit.domain.ItemStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Moves order items to a new status with one set-based UPDATE per target status, rather than loading and
+ * saving each item. The transition is checked by the UPDATE itself, which only touches items currently in one of
+ * the allowed previous statuses, so there is no window between reading a status and changing it.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderItemStatusRepository {
+
+    /**
+     * order_keys gives the creation time of each order, so the UPDATE only looks in the partition holding it.
+     */
+    private static final String UPDATE_STATUS = """
+            UPDATE order_items i
+            SET status = ?
+            FROM unnest(?::BIGINT[], ?::VARCHAR[]) AS u(order_id, product_id)
+            JOIN order_keys k ON k.uuid = u.order_id
+            WHERE i.order_id = u.order_id
+              AND i.order_created = k.order_created
+              AND i.product_id = u.product_id
+              AND i.status = ANY(?::VARCHAR[])
+            RETURNING i.order_id, i.product_id""";
+
+    private static final String CANCEL_ORDERS = """
+            UPDATE order_items i
+            SET status = 'CANCELLED'
+            FROM unnest(?::BIGINT[]) AS u(order_id)
+            JOIN order_keys k ON k.uuid = u.order_id
+            WHERE i.order_id = u.order_id
+              AND i.order_created = k.order_created
+              AND i.status = ANY(?::VARCHAR[])
+            RETURNING i.order_id, i.product_id, i.quantity""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Moves the given items to the target status, skipping any that don't exist or whose current status can't
+     * move to it.
+     *
+     * @param target the status to move to
+     * @param items  the items to update, each at most once
+     * @return the items that were updated
+     */
+    public List<ItemKey> updateStatus(ItemStatus target, Collection<ItemKey> items) {
+        Object[] orderIds = items.stream().map(ItemKey::orderId).toArray();
+        Object[] productIds = items.stream().map(ItemKey::productId).toArray();
+        Object[] previousStatuses = target.getPreviousStatuses().stream().map(ItemStatus::name).toArray();
+
+        return jdbcTemplate.query(UPDATE_STATUS, statement -> {
+            Connection connection = statement.getConnection();
+            statement.setString(1, target.name());
+            statement.setArray(2, connection.createArrayOf("bigint", orderIds));
+            statement.setArray(3, connection.createArrayOf("varchar", productIds));
+            statement.setArray(4, connection.createArrayOf("varchar", previousStatuses));
+        }, (resultSet, rowNum) -> new ItemKey(resultSet.getLong(1), resultSet.getString(2)));
+    }
+
+    /**
+     * Cancels every item of the given orders that can still be cancelled, in one statement.
+     *
+     * @param orderIds the orders to cancel, each at most once
+     * @return the items that were cancelled, with their quantities
+     */
+    public List<CancelledItem> cancelOrders(Collection<Long> orderIds) {
+        Object[] previousStatuses = ItemStatus.CANCELLED.getPreviousStatuses().stream().map(ItemStatus::name).toArray();
+
+        return jdbcTemplate.query(CANCEL_ORDERS, statement -> {
+            Connection connection = statement.getConnection();
+            statement.setArray(1, connection.createArrayOf("bigint", orderIds.toArray()));
+            statement.setArray(2, connection.createArrayOf("varchar", previousStatuses));
+        }, (resultSet, rowNum) -> new CancelledItem(resultSet.getLong(1), resultSet.getString(2),
+                resultSet.getInt(3)));
+    }
+
+    /**
+     * Identifies an order item by its order and product; product_id is stored as text.
+     */
+    public record ItemKey(long orderId, String productId) {
+    }
+
+    /**
+     * An order item that was cancelled, and the quantity it had reserved.
+     */
+    public record CancelledItem(long orderId, String productId, int quantity) {
+    }
+}
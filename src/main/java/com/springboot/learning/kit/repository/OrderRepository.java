@@ -1,18 +1,63 @@
 package com.springboot.learning.kit.repository;
 
 import com.springboot.learning.kit.domain.Order;
-import com.springboot.learning.kit.domain.OrderType;
+import com.springboot.learning.kit.dto.projection.OrderSummaryRow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
 
-    // Custom query methods can be defined here
-    // For example, find orders by status or type
-    default List<Order> findByType(OrderType type) {
-        return null;
-    }
+    /**
+     * Reads one page of orders of a type, in (order_created, uuid) order, starting right after the last order
+     * of the previous page. Seeking on idx_orders_type_created_uuid rather than using OFFSET keeps every page
+     * as cheap as the first, however deep the client pages. The plain bound on order_created repeats part of the
+     * row comparison, as the planner can only skip the monthly partitions before the cursor on a plain bound.
+     * Runs read-only, so it can be served by a read replica.
+     *
+     * @param orderType    the order type to list
+     * @param from         the earliest creation time to include
+     * @param to           the creation time to stop before
+     * @param afterCreated the creation time of the last order of the previous page
+     * @param afterUUID    the UUID of the last order of the previous page
+     * @param limit        the page size
+     * @return the orders on the page
+     */
+    @Transactional(readOnly = true)
+    @Query(value = """
+            SELECT o.uuid          AS "uuid",
+                   o.order_type    AS "orderType",
+                   o.total_amount  AS "totalAmount",
+                   o.currency      AS "currency",
+                   o.order_created AS "orderCreated"
+            FROM orders o
+            WHERE o.order_type = :orderType
+              AND o.order_created >= :from
+              AND o.order_created < :to
+              AND o.order_created >= :afterCreated
+              AND (o.order_created, o.uuid) > (:afterCreated, :afterUUID)
+            ORDER BY o.order_created, o.uuid
+            LIMIT :limit""", nativeQuery = true)
+    List<OrderSummaryRow> findPageByType(@Param("orderType") String orderType,
+                                         @Param("from") LocalDateTime from,
+                                         @Param("to") LocalDateTime to,
+                                         @Param("afterCreated") LocalDateTime afterCreated,
+                                         @Param("afterUUID") long afterUUID,
+                                         @Param("limit") int limit);
+
+    /**
+     * Checks whether an order has been saved, reading order_keys rather than probing every partition of orders.
+     * Always answered by the primary, as a lagging replica could miss an order that was just placed.
+     *
+     * @param orderUUID the UUID of the order
+     * @return true if the order exists
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM order_keys WHERE uuid = :orderUUID)", nativeQuery = true)
+    boolean existsByKey(@Param("orderUUID") long orderUUID);
 }
@@ -1,10 +1,36 @@
 package com.springboot.learning.kit.repository;
 
 import com.springboot.learning.kit.domain.Order;
+import com.springboot.learning.kit.dto.projection.OrderStatusRow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface OrderStatusRepository extends JpaRepository<Order, Long> {
 
+    /**
+     * Reads an order and the status of each of its items in a single query, projected straight into rows
+     * rather than loading the entities. The creation time is looked up in order_keys first, so only the one
+     * partition of orders and of order_items holding the order is read. Always answered by the primary: the
+     * result is cached until the order's next status change, so a lagging replica would keep a stale status cached.
+     *
+     * @param orderUUID the UUID of the order
+     * @return one row per item, or no rows if the order doesn't exist
+     */
+    @Query(value = """
+            SELECT o.uuid                         AS "orderId",
+                   o.order_type                   AS "orderType",
+                   CAST(i.product_id AS BIGINT)   AS "productId",
+                   i.quantity                     AS "quantity",
+                   i.status                       AS "status"
+            FROM order_keys k
+            JOIN orders o ON o.uuid = k.uuid AND o.order_created = k.order_created
+            LEFT JOIN order_items i ON i.order_id = o.uuid AND i.order_created = o.order_created
+            WHERE k.uuid = :orderUUID
+            ORDER BY i.id""", nativeQuery = true)
+    List<OrderStatusRow> findOrderStatus(@Param("orderUUID") long orderUUID);
 }
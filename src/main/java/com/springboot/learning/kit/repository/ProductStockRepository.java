@@ -0,0 +1,53 @@
+package com.springboot.learning.kit.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+
+/**
+ * Reads and writes back the stock held by the in-memory inventory ledger. Writes apply the net change since the
+ * last write rather than an absolute value, so each product costs one UPDATE per flush however many orders took
+ * stock from it in between.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductStockRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param productId the product
+     * @return the available quantity of the product, or empty if its stock isn't tracked
+     */
+    public OptionalInt findAvailableQty(long productId) {
+        List<Integer> quantities = jdbcTemplate.queryForList(
+                "SELECT available_qty FROM product_stock WHERE product_id = ?", Integer.class, productId);
+        return quantities.isEmpty() ? OptionalInt.empty() : OptionalInt.of(quantities.get(0));
+    }
+
+    /**
+     * Adds the given changes to the available quantities, in a single batch.
+     *
+     * @param deltas the net change in stock per product id
+     */
+    public void applyDeltas(Map<Long, Integer> deltas) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        // A fixed order keeps concurrent writers from locking the same rows in opposite orders
+        deltas.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> rows.add(new Object[]{entry.getValue(), now, entry.getKey()}));
+
+        jdbcTemplate.batchUpdate("""
+                UPDATE product_stock
+                SET available_qty = available_qty + ?, last_modified_date = ?
+                WHERE product_id = ?""", rows);
+    }
+}
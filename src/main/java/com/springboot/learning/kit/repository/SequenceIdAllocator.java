@@ -0,0 +1,97 @@
+package com.springboot.learning.kit.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out ids from the pooled sequences for rows written with plain SQL rather than through Hibernate.
+ * <p>
+ * Each value returned by a sequence is the upper bound of a block of {@link #ALLOCATION_SIZE} ids, which is how
+ * Hibernate's pooled optimiser reads it too, so ids handed out here never clash with the ones Hibernate assigns.
+ */
+@Component
+@RequiredArgsConstructor
+public class SequenceIdAllocator {
+
+    /**
+     * Must match the increment of the sequences and the allocationSize of the @SequenceGenerator on the entities.
+     */
+    public static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<String, IdBlock> currentBlocks = new HashMap<>();
+
+    /**
+     * @param sequenceName the sequence to allocate from
+     * @return the next free id
+     */
+    public synchronized long next(String sequenceName) {
+        IdBlock block = currentBlocks.get(sequenceName);
+        if (block == null || block.exhausted()) {
+            block = fetchBlocks(sequenceName, 1).get(0);
+            currentBlocks.put(sequenceName, block);
+        }
+        return block.next++;
+    }
+
+    /**
+     * Reserves a run of ids in as few round trips as possible.
+     *
+     * @param sequenceName the sequence to allocate from
+     * @param count        how many ids are needed
+     * @return the allocated ids
+     */
+    public synchronized long[] allocate(String sequenceName, int count) {
+        long[] ids = new long[count];
+        int allocated = 0;
+
+        IdBlock block = currentBlocks.get(sequenceName);
+        while (block != null && !block.exhausted() && allocated < count) {
+            ids[allocated++] = block.next++;
+        }
+
+        while (allocated < count) {
+            int blocksNeeded = (count - allocated + ALLOCATION_SIZE - 1) / ALLOCATION_SIZE;
+            for (IdBlock fetched : fetchBlocks(sequenceName, blocksNeeded)) {
+                block = fetched;
+                while (!block.exhausted() && allocated < count) {
+                    ids[allocated++] = block.next++;
+                }
+            }
+        }
+
+        // Keep whatever is left of the last block for the next caller
+        if (block != null) {
+            currentBlocks.put(sequenceName, block);
+        }
+        return ids;
+    }
+
+    private List<IdBlock> fetchBlocks(String sequenceName, int blocks) {
+        return jdbcTemplate.queryForList("SELECT nextval(?::regclass) FROM generate_series(1, ?)",
+                        Long.class, sequenceName, blocks)
+                .stream()
+                .map(upperBound -> new IdBlock(Math.max(1, upperBound - ALLOCATION_SIZE + 1), upperBound))
+                .toList();
+    }
+
+    private static final class IdBlock {
+        private long next;
+        private final long last;
+
+        private IdBlock(long first, long last) {
+            this.next = first;
+            this.last = last;
+        }
+
+        private boolean exhausted() {
+            return next > last;
+        }
+    }
+}
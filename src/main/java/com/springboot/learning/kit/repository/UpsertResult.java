@@ -0,0 +1,10 @@
+package com.springboot.learning.kit.repository;
+
+/**
+ * Outcome of an insert-if-absent on a natural key.
+ *
+ * @param id       the id of the row holding the key
+ * @param inserted whether the row was inserted by this call, rather than already there
+ */
+public record UpsertResult(long id, boolean inserted) {
+}
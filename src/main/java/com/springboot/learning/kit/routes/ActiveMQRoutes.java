@@ -1,9 +1,15 @@
 package com.springboot.learning.kit.routes;
 
 import com.springboot.learning.kit.consumer.NewOrderConsumer;
+import com.springboot.learning.kit.consumer.OrderCancellationConsumer;
+import com.springboot.learning.kit.consumer.OrderStatusConsumer;
+import com.springboot.learning.kit.exception.OrderValidationException;
+import com.springboot.learning.kit.service.OrderAggregationService;
+import com.springboot.learning.kit.service.OrderProcessingService;
 import lombok.RequiredArgsConstructor;
 import org.apache.camel.LoggingLevel;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.model.ProcessorDefinition;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
@@ -11,7 +17,16 @@ import org.springframework.context.annotation.Configuration;
 @RequiredArgsConstructor
 public class ActiveMQRoutes extends RouteBuilder {
 
+    /**
+     * Property recording why a placement message was dead lettered, for the dead letter queue replay to filter on.
+     */
+    public static final String DLQ_REASON_HEADER = "dlqReason";
+
     private static final int MAX_RETRIES = 1;
+    private static final String PARSE_STAGE = "orderParse";
+    private static final String PERSIST_STAGE = "orderPersist";
+    private static final String PARSE_ORDER =
+            "parseActiveMQOrder(${body}, ${header.contentType}, ${header.contentEncoding})";
 
     @Value("${amq.order.placement.queue}")
     private String orderPlacementQueue;
@@ -31,22 +46,125 @@ public class ActiveMQRoutes extends RouteBuilder {
     @Value("${amq.order.cancellation.queue.dlq}")
     private String orderCancellationQueueDlq;
 
+    @Value("${amq.order.placement.concurrent-consumers:16}")
+    private int orderPlacementConsumers;
+
+    @Value("${amq.order.placement.parse-threads:4}")
+    private int parseThreads;
+
+    @Value("${amq.order.placement.persist-threads:8}")
+    private int persistThreads;
+
+    @Value("${amq.order.placement.stage-queue-size:100}")
+    private int stageQueueSize;
+
+    @Value("${amq.order.placement.aggregation.concurrent-consumers:100}")
+    private int aggregationConsumers;
+
+    @Value("${amq.order.status.concurrent-consumers:8}")
+    private int orderStatusConsumers;
+
+    @Value("${amq.order.cancellation.concurrent-consumers:4}")
+    private int orderCancellationConsumers;
+
     private final NewOrderConsumer newOrderConsumer;
+    private final OrderStatusConsumer orderStatusConsumer;
+    private final OrderCancellationConsumer orderCancellationConsumer;
+    private final OrderProcessingService orderProcessingService;
+    private final OrderAggregationService orderAggregationService;
 
     @Override
     public void configure() throws Exception {
 
-        // Order placement route
-        from("activemq:queue:" + orderPlacementQueue)
+        // Order placement route. Each message is either handed through the stages below, each with its own
+        // threads so parsing and saving scale separately, or, in aggregation mode, parsed and saved as part of a
+        // group of orders in one transaction. Either way the JMS consumer waits for its order to be saved, and a
+        // failure comes back here to be retried or dead lettered. The listener container only acknowledges a
+        // message in client acknowledge mode once the route has finished with it, so an order that hasn't been
+        // saved or dead lettered when the application dies is delivered again rather than lost
+        int consumers = orderAggregationService.isEnabled() ? aggregationConsumers : orderPlacementConsumers;
+        ProcessorDefinition<?> orderPlacementRoute = from("activemq:queue:" + orderPlacementQueue
+                + "?concurrentConsumers=" + consumers + "&acknowledgementModeName=CLIENT_ACKNOWLEDGE")
                 .routeId("orderPlacementRoute")
-                .log(LoggingLevel.INFO, "Processing new order: ${body}")
+                .log(LoggingLevel.DEBUG, "Processing new order message ${header.JMSMessageID}")
                 .onException(Exception.class)
                 .maximumRedeliveries(MAX_RETRIES)
+                .setHeader(DLQ_REASON_HEADER, simple("${exception.message}"))
                 .to("activemq:queue:" + orderPlacementQueueDlq)
                 .log(LoggingLevel.ERROR, "Order processing failed: ${exception.message}")
                 .handled(true)
+                .end();
+        if (orderAggregationService.isEnabled()) {
+            orderPlacementRoute
+                    .bean(newOrderConsumer, PARSE_ORDER)
+                    .bean(orderAggregationService, "placeOrder")
+                    .log(LoggingLevel.DEBUG, "Order processed successfully");
+        } else {
+            orderPlacementRoute
+                    .to(toStage(PARSE_STAGE))
+                    .log(LoggingLevel.DEBUG, "Order processed successfully");
+        }
+
+        // Parse stage, CPU bound
+        from(fromStage(PARSE_STAGE, parseThreads))
+                .routeId("orderParseStage")
+                .errorHandler(noErrorHandler())
+                .bean(newOrderConsumer, PARSE_ORDER)
+                .to(toStage(PERSIST_STAGE));
+
+        // Persist stage, IO bound: validates, reserves stock and saves the order
+        from(fromStage(PERSIST_STAGE, persistThreads))
+                .routeId("orderPersistStage")
+                .errorHandler(noErrorHandler())
+                .bean(orderProcessingService, "processNewOrder");
+
+        // Order status route, consumed by several threads so their changes can be batched together
+        from("activemq:queue:" + orderStatusQueue + "?concurrentConsumers=" + orderStatusConsumers)
+                .routeId("orderStatusRoute")
+                .onException(OrderValidationException.class)
+                .to("activemq:queue:" + orderStatusQueueDlq)
+                .log(LoggingLevel.WARN, "Invalid order status message: ${exception.message}")
+                .handled(true)
                 .end()
-                .bean(newOrderConsumer, "processActiveMQOrder")
-                .log(LoggingLevel.INFO, "Order processed successfully");
+                .onException(Exception.class)
+                .maximumRedeliveries(MAX_RETRIES)
+                .to("activemq:queue:" + orderStatusQueueDlq)
+                .log(LoggingLevel.ERROR, "Order status update failed: ${exception.message}")
+                .handled(true)
+                .end()
+                .bean(orderStatusConsumer, "processActiveMQStatus");
+
+        // Order cancellation route
+        from("activemq:queue:" + orderCancellationQueue + "?concurrentConsumers=" + orderCancellationConsumers)
+                .routeId("orderCancellationRoute")
+                .onException(OrderValidationException.class)
+                .to("activemq:queue:" + orderCancellationQueueDlq)
+                .log(LoggingLevel.WARN, "Invalid order cancellation message: ${exception.message}")
+                .handled(true)
+                .end()
+                .onException(Exception.class)
+                .maximumRedeliveries(MAX_RETRIES)
+                .to("activemq:queue:" + orderCancellationQueueDlq)
+                .log(LoggingLevel.ERROR, "Order cancellation failed: ${exception.message}")
+                .handled(true)
+                .end()
+                .bean(orderCancellationConsumer, "processActiveMQCancellation");
+    }
+
+    /**
+     * The bounded queue feeding a stage, consumed by the given number of threads.
+     */
+    private String fromStage(String stage, int threads) {
+        return "seda:" + stage + "?size=" + stageQueueSize + "&concurrentConsumers=" + threads;
+    }
+
+    /**
+     * Hands the exchange to a stage and waits for it to finish. Blocks while the stage's queue is full, which
+     * pushes back on the stage before it. There is no timeout: a caller giving up early would retry or dead letter
+     * an order the stage may still save, so a slow stage is bounded by its threads and the JMS consumers instead.
+     */
+    private String toStage(String stage) {
+        return "seda:" + stage + "?size=" + stageQueueSize + "&blockWhenFull=true&waitForTaskToComplete=Always"
+                + "&timeout=0";
     }
 }
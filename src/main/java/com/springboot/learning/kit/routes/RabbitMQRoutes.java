@@ -16,6 +16,12 @@ public class RabbitMQRoutes {
     @Value("${rmq.order.placement.queue.dlq}")
     private String orderPlacementQueueDlq;
 
+    @Value("${rmq.order.placement.queue.retry}")
+    private String orderPlacementQueueRetry;
+
+    @Value("${rmq.order.placement.retry.delay-ms:5000}")
+    private long orderPlacementRetryDelayMillis;
+
     @Value("${rmq.order.status.queue}")
     private String orderStatusQueue;
 
@@ -69,4 +75,68 @@ public class RabbitMQRoutes {
         return BindingBuilder.bind(deadLetterQueue).to(exchange).with(orderPlacementQueueDlq);
     }
 
+    /**
+     * Holds orders that failed because the database was unavailable for the retry delay, after which they are
+     * dead lettered back onto the placement queue. Nothing consumes from it.
+     */
+    @Bean
+    public Queue retryQueue() {
+        return QueueBuilder.durable(orderPlacementQueueRetry)
+                .withArgument("x-message-ttl", orderPlacementRetryDelayMillis)
+                .withArgument("x-dead-letter-exchange", EXCHANGE)
+                .withArgument("x-dead-letter-routing-key", orderPlacementQueue)
+                .build();
+    }
+
+    @Bean
+    public Binding retryBinding(Queue retryQueue, DirectExchange exchange) {
+        return BindingBuilder.bind(retryQueue).to(exchange).with(orderPlacementQueueRetry);
+    }
+
+    @Bean
+    public Queue statusQueue() {
+        return QueueBuilder.durable(orderStatusQueue)
+                .withArgument("x-dead-letter-exchange", EXCHANGE)
+                .withArgument("x-dead-letter-routing-key", orderStatusQueueDlq)
+                .build();
+    }
+
+    @Bean
+    public Queue statusDeadLetterQueue() {
+        return QueueBuilder.durable(orderStatusQueueDlq).build();
+    }
+
+    @Bean
+    public Binding statusBinding(Queue statusQueue, DirectExchange exchange) {
+        return BindingBuilder.bind(statusQueue).to(exchange).with(orderStatusQueue);
+    }
+
+    @Bean
+    public Binding statusDlqBinding(Queue statusDeadLetterQueue, DirectExchange exchange) {
+        return BindingBuilder.bind(statusDeadLetterQueue).to(exchange).with(orderStatusQueueDlq);
+    }
+
+    @Bean
+    public Queue cancellationQueue() {
+        return QueueBuilder.durable(orderCancellationQueue)
+                .withArgument("x-dead-letter-exchange", EXCHANGE)
+                .withArgument("x-dead-letter-routing-key", orderCancellationQueueDlq)
+                .build();
+    }
+
+    @Bean
+    public Queue cancellationDeadLetterQueue() {
+        return QueueBuilder.durable(orderCancellationQueueDlq).build();
+    }
+
+    @Bean
+    public Binding cancellationBinding(Queue cancellationQueue, DirectExchange exchange) {
+        return BindingBuilder.bind(cancellationQueue).to(exchange).with(orderCancellationQueue);
+    }
+
+    @Bean
+    public Binding cancellationDlqBinding(Queue cancellationDeadLetterQueue, DirectExchange exchange) {
+        return BindingBuilder.bind(cancellationDeadLetterQueue).to(exchange).with(orderCancellationQueueDlq);
+    }
+
 }
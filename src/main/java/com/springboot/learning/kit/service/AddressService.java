@@ -1,21 +1,76 @@
 package com.springboot.learning.kit.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.springboot.learning.kit.domain.CustomerAddress;
 import com.springboot.learning.kit.dto.request.CustomerAddressRequest;
 import com.springboot.learning.kit.repository.CustomerAddressRepository;
+import com.springboot.learning.kit.repository.UpsertResult;
 import com.springboot.learning.kit.transformer.OrderTransformer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
 @RequiredArgsConstructor
 public class AddressService {
 
+    @Value("${address.cache.max-size:200000}")
+    private long cacheMaxSize;
+
     private final OrderTransformer orderTransformer;
     private final CustomerAddressRepository customerAddressRepository;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Address fingerprint to address id. Interned addresses never change, so entries only leave on eviction.
+     */
+    private Cache<String, Long> addressIds;
 
+    @PostConstruct
+    void initCache() {
+        addressIds = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, addressIds, "addresses");
+    }
+
+    /**
+     * Resolves the address to the id of the interned row with the same fingerprint, inserting it if it's new.
+     *
+     * @param customerAddressRequest the customer address request object
+     * @return the ID of the new or existing customer address
+     */
     public long saveCustomerAddress(CustomerAddressRequest customerAddressRequest) {
         CustomerAddress customerAddress = orderTransformer.transformCustomerAddressToDomain(customerAddressRequest);
-        return customerAddressRepository.save(customerAddress).getId();
+
+        Long cachedId = addressIds.getIfPresent(customerAddress.getFingerprint());
+        if (cachedId != null) {
+            return cachedId;
+        }
+
+        UpsertResult result = customerAddressRepository.upsertAddress(customerAddress);
+        cacheOnceCommitted(customerAddress.getFingerprint(), result.id());
+        return result.id();
+    }
+
+    private void cacheOnceCommitted(String fingerprint, long addressId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addressIds.put(fingerprint, addressId);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                addressIds.put(fingerprint, addressId);
+            }
+        });
     }
 }
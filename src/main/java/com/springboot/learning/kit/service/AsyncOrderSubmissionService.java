@@ -0,0 +1,175 @@
+package com.springboot.learning.kit.service;
+
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import com.springboot.learning.kit.exception.OrderProcessingException;
+import com.springboot.learning.kit.exception.OrderValidationException;
+import com.springboot.learning.kit.exception.ServiceOverloadedException;
+import com.springboot.learning.kit.routes.RabbitMQRoutes;
+import com.springboot.learning.kit.transformer.OrderMessageCodec;
+import com.springboot.learning.kit.transformer.OrderMessageCodec.EncodedOrder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Accepts orders over HTTP by publishing them to the RabbitMQ order placement queue rather than saving them on
+ * the request thread. An order is only reported as accepted once the broker has confirmed it holds the message,
+ * so it's as safe as if it had been saved; the placement consumers save it from there.
+ * <p>
+ * Confirms arrive on the connection's own thread and complete the caller's future, so nothing waits on them. If
+ * the message can't be published, or the broker rejects it or can't route it, it's certain not to be queued, so
+ * the order is processed directly instead, on a small pool of fallback threads. If the broker doesn't confirm it
+ * within the confirm timeout the message may still be queued, so rather than risk placing the order twice the
+ * submission fails as overloaded and the client retries it; a retry of an order that was queued after all is
+ * ignored as a duplicate.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AsyncOrderSubmissionService {
+
+    @Value("${order.submit.async.enabled:false}")
+    private boolean enabled;
+
+    @Value("${order.submit.async.confirm-timeout-ms:1000}")
+    private long confirmTimeoutMillis;
+
+    @Value("${order.submit.async.fallback-threads:8}")
+    private int fallbackThreads;
+
+    @Value("${order.submit.async.fallback-queue-capacity:1000}")
+    private int fallbackQueueCapacity;
+
+    @Value("${rmq.order.placement.queue}")
+    private String orderPlacementQueue;
+
+    private final RabbitTemplate rabbitTemplate;
+    private final OrderMessageCodec orderMessageCodec;
+    private final OrderValidationService orderValidationService;
+    private final OrderProcessingService orderProcessingService;
+    private final MeterRegistry meterRegistry;
+
+    private ExecutorService fallbackExecutor;
+    private Counter confirmed;
+    private Counter fallbacks;
+    private Counter unconfirmed;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+
+        confirmed = meterRegistry.counter("orders.async.submissions", "result", "confirmed");
+        fallbacks = meterRegistry.counter("orders.async.submissions", "result", "fallback");
+        unconfirmed = meterRegistry.counter("orders.async.submissions", "result", "unconfirmed");
+
+        AtomicInteger threadCount = new AtomicInteger();
+        fallbackExecutor = new ThreadPoolExecutor(fallbackThreads, fallbackThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(fallbackQueueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "order-submit-fallback-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        if (fallbackExecutor != null) {
+            fallbackExecutor.shutdown();
+        }
+    }
+
+    /**
+     * @return true if orders submitted over HTTP should go through the broker
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Validates the order and publishes it to the order placement queue.
+     *
+     * @param orderRequest the order to submit
+     * @return a future completed once the broker has confirmed the order, or the order has been processed
+     * directly; completed exceptionally if neither worked, with a {@link ServiceOverloadedException} if the
+     * broker didn't confirm the order in time
+     * @throws OrderValidationException if the order is invalid
+     */
+    public CompletableFuture<Void> submit(OrderRequest orderRequest) {
+        orderValidationService.validateOrder(orderRequest);
+
+        CorrelationData correlation = new CorrelationData(String.valueOf(orderRequest.getUUID()));
+        try {
+            rabbitTemplate.send(RabbitMQRoutes.EXCHANGE, orderPlacementQueue, toMessage(orderRequest), correlation);
+        } catch (AmqpException e) {
+            log.warn("Failed to publish order {}, processing it directly ~ {}", orderRequest.getUUID(),
+                    e.getMessage());
+            return fallback(orderRequest);
+        }
+
+        return correlation.getFuture()
+                .orTimeout(confirmTimeoutMillis, TimeUnit.MILLISECONDS)
+                .handle((confirm, e) -> {
+                    if (e != null) {
+                        unconfirmed.increment();
+                        log.warn("Order {} was not confirmed by the broker in time, asking the client to retry",
+                                orderRequest.getUUID());
+                        return CompletableFuture.<Void>failedFuture(new ServiceOverloadedException(
+                                "Order not confirmed by the broker in time, please retry"));
+                    }
+                    if (confirm.isAck() && correlation.getReturned() == null) {
+                        confirmed.increment();
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    log.warn("Order {} was rejected by the broker, processing it directly", orderRequest.getUUID());
+                    return fallback(orderRequest);
+                })
+                .thenCompose(outcome -> outcome);
+    }
+
+    private CompletableFuture<Void> fallback(OrderRequest orderRequest) {
+        fallbacks.increment();
+        try {
+            return CompletableFuture.runAsync(() -> orderProcessingService.processNewOrder(orderRequest),
+                    fallbackExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(
+                    new ServiceOverloadedException("Too many orders waiting to be processed directly"));
+        }
+    }
+
+    private Message toMessage(OrderRequest orderRequest) {
+        try {
+            EncodedOrder encoded = orderMessageCodec.encode(orderRequest);
+            return MessageBuilder.withBody(encoded.body())
+                    .setContentType(encoded.contentType())
+                    .setContentEncoding(encoded.contentEncoding())
+                    .setMessageId(String.valueOf(orderRequest.getUUID()))
+                    .setDeliveryMode(MessageDeliveryMode.PERSISTENT)
+                    .build();
+        } catch (IOException e) {
+            throw new OrderProcessingException("Failed to serialize order: " + orderRequest.getUUID(), e);
+        }
+    }
+}
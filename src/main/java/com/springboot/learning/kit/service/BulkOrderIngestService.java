@@ -0,0 +1,200 @@
+package com.springboot.learning.kit.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.learning.kit.dto.request.OrderItemRequest;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import com.springboot.learning.kit.dto.response.BulkOrderLineResult;
+import com.springboot.learning.kit.dto.response.BulkOrderSummaryResponse;
+import com.springboot.learning.kit.exception.OrderValidationException;
+import com.springboot.learning.kit.repository.BulkOrderRepository;
+import com.springboot.learning.kit.repository.BulkOrderRepository.StagedOrder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Ingests newline-delimited JSON order uploads, such as the nightly store backfills. The upload is read one
+ * line at a time and loaded in fixed-size chunks, each chunk in its own transaction, so memory use doesn't
+ * depend on the size of the upload. A result is written back for every line as soon as its chunk is done.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkOrderIngestService {
+
+    @Value("${order.bulk.chunk-size:5000}")
+    private int chunkSize;
+
+    private final ObjectMapper objectMapper;
+    private final OrderValidationService orderValidationService;
+    private final BulkOrderRepository bulkOrderRepository;
+    private final InventoryReservationService inventoryReservationService;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Loads every order in the upload and reports the outcome per line, followed by a summary line.
+     *
+     * @param upload the NDJSON body, one OrderRequest per line
+     * @param report where the NDJSON report is written
+     * @return the summary of the upload
+     */
+    public BulkOrderSummaryResponse ingest(InputStream upload, OutputStream report) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(upload, StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(report, StandardCharsets.UTF_8));
+        BulkOrderSummaryResponse summary = new BulkOrderSummaryResponse();
+
+        List<StagedOrder> chunk = new ArrayList<>(chunkSize);
+        Set<Long> chunkUUIDs = new HashSet<>();
+        Map<Integer, Map<Long, Integer>> chunkReservations = new HashMap<>();
+        int lineNumber = 0;
+        String line;
+
+        // Stock reserved for the chunk being built is handed back if the upload is cut short
+        try {
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                summary.setLinesRead(summary.getLinesRead() + 1);
+
+                OrderRequest order;
+                try {
+                    order = objectMapper.readValue(line, OrderRequest.class);
+                    validate(order);
+                } catch (Exception e) {
+                    summary.setRejected(summary.getRejected() + 1);
+                    writeResult(writer, lineNumber, null, BulkOrderLineResult.REJECTED, e.getMessage());
+                    continue;
+                }
+
+                // Duplicates across chunks are caught by the database, so we only need to track the current chunk
+                if (!chunkUUIDs.add(order.getUUID())) {
+                    summary.setDuplicates(summary.getDuplicates() + 1);
+                    writeResult(writer, lineNumber, order.getUUID(), BulkOrderLineResult.DUPLICATE, null);
+                    continue;
+                }
+
+                try {
+                    chunkReservations.put(lineNumber, inventoryReservationService.reserve(order));
+                } catch (RuntimeException e) {
+                    summary.setRejected(summary.getRejected() + 1);
+                    writeResult(writer, lineNumber, order.getUUID(), BulkOrderLineResult.REJECTED, e.getMessage());
+                    continue;
+                }
+
+                chunk.add(new StagedOrder(lineNumber, order));
+                if (chunk.size() == chunkSize) {
+                    loadChunk(chunk, chunkReservations, writer, summary);
+                    chunk.clear();
+                    chunkUUIDs.clear();
+                    chunkReservations.clear();
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                loadChunk(chunk, chunkReservations, writer, summary);
+            }
+        } catch (IOException | RuntimeException e) {
+            chunkReservations.values().forEach(inventoryReservationService::release);
+            throw e;
+        }
+
+        writer.write(objectMapper.writeValueAsString(summary));
+        writer.write('\n');
+        writer.flush();
+
+        log.info("Bulk order upload finished: {}", summary);
+        return summary;
+    }
+
+    private void loadChunk(List<StagedOrder> chunk, Map<Integer, Map<Long, Integer>> reservations, Writer writer,
+                           BulkOrderSummaryResponse summary) throws IOException {
+        Set<Integer> duplicateLines;
+        try {
+            duplicateLines = transactionTemplate.execute(status -> bulkOrderRepository.insertOrders(chunk));
+        } catch (Exception e) {
+            log.error("Failed to load bulk order chunk of {} orders starting at line {}",
+                    chunk.size(), chunk.get(0).lineNumber(), e);
+            summary.setFailed(summary.getFailed() + chunk.size());
+            reservations.values().forEach(inventoryReservationService::release);
+            reservations.clear();
+            for (StagedOrder staged : chunk) {
+                writeResult(writer, staged.lineNumber(), staged.order().getUUID(), BulkOrderLineResult.FAILED,
+                        e.getMessage());
+            }
+            writer.flush();
+            return;
+        }
+
+        if (duplicateLines != null) {
+            duplicateLines.forEach(line -> inventoryReservationService.release(reservations.get(line)));
+        }
+        // The chunk's stock is settled, so a failure writing the report mustn't release it again
+        reservations.clear();
+
+        for (StagedOrder staged : chunk) {
+            if (duplicateLines != null && duplicateLines.contains(staged.lineNumber())) {
+                summary.setDuplicates(summary.getDuplicates() + 1);
+                writeResult(writer, staged.lineNumber(), staged.order().getUUID(), BulkOrderLineResult.DUPLICATE,
+                        null);
+            } else {
+                summary.setCreated(summary.getCreated() + 1);
+                writeResult(writer, staged.lineNumber(), staged.order().getUUID(), BulkOrderLineResult.CREATED,
+                        null);
+            }
+        }
+        // Let the client see progress on long uploads
+        writer.flush();
+    }
+
+    /**
+     * COPY rejects the whole chunk on a single missing value, so incomplete orders, and incomplete items, are
+     * turned away up front, failing only their own line.
+     */
+    private void validate(OrderRequest order) {
+        orderValidationService.validateOrder(order);
+
+        if (order.getUUID() == null) {
+            throw new OrderValidationException("Order UUID cannot be null");
+        }
+        if (order.getCustomerDetails() == null || order.getCustomerAddress() == null) {
+            throw new OrderValidationException("Customer details and address are required");
+        }
+        if (order.getOrderItems() == null || order.getOrderItems().isEmpty()) {
+            throw new OrderValidationException("Order must contain at least one item");
+        }
+        for (OrderItemRequest item : order.getOrderItems()) {
+            if (item == null || item.getProductId() == null) {
+                throw new OrderValidationException("Order item product id cannot be null");
+            }
+            if (item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new OrderValidationException("Order item quantity must be positive");
+            }
+            if (item.getPricePerUnit() == null || item.getPricePerUnit().signum() < 0) {
+                throw new OrderValidationException("Order item price per unit is required and cannot be negative");
+            }
+        }
+        if (order.getOrderAmount() == null || order.getCurrency() == null) {
+            throw new OrderValidationException("Order amount and currency are required");
+        }
+    }
+
+    private void writeResult(Writer writer, int lineNumber, Long orderId, String status, String error)
+            throws IOException {
+        BulkOrderLineResult result = BulkOrderLineResult.builder()
+                .line(lineNumber)
+                .orderId(orderId)
+                .status(status)
+                .error(error)
+                .build();
+        writer.write(objectMapper.writeValueAsString(result));
+        writer.write('\n');
+    }
+}
@@ -1,27 +1,99 @@
 package com.springboot.learning.kit.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.springboot.learning.kit.domain.CustomerDetails;
 import com.springboot.learning.kit.dto.request.CustomerDetailsRequest;
 import com.springboot.learning.kit.repository.CustomerDetailsRepository;
+import com.springboot.learning.kit.repository.UpsertResult;
 import com.springboot.learning.kit.transformer.OrderTransformer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Objects;
 
 @Service
 @RequiredArgsConstructor
 public class CustomerService {
 
+    @Value("${customer.cache.max-size:100000}")
+    private long cacheMaxSize;
+
+    @Value("${customer.cache.ttl-minutes:60}")
+    private long cacheTtlMinutes;
+
     private final OrderTransformer orderTransformer;
     private final CustomerDetailsRepository customerDetailsRepository;
+    private final MeterRegistry meterRegistry;
 
     /**
-     * This method saves customer details to the database.
+     * Customer key to customer id and name, so repeat customers can be resolved without touching the database
+     * as long as their name hasn't changed.
+     */
+    private Cache<String, KnownCustomer> customerIds;
+
+    @PostConstruct
+    void initCache() {
+        customerIds = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofMinutes(cacheTtlMinutes))
+                .recordStats()
+                .build();
+        // Publishes cache.gets (hit/miss), cache.evictions and cache.size tagged with cache=customers
+        CaffeineCacheMetrics.monitor(meterRegistry, customerIds, "customers");
+    }
+
+    /**
+     * This method resolves the customer to an id, inserting the customer details only if no customer with the
+     * same normalised email and phone exists yet, and otherwise updating the name if it has changed. Customers
+     * with neither an email nor a phone can't be recognised, so they are always inserted.
      *
      * @param customerDetailsRequest the customer details request object
-     * @return the ID of the saved customer details
+     * @return the ID of the new or existing customer details
      */
     public long saveCustomerDetails(CustomerDetailsRequest customerDetailsRequest) {
         CustomerDetails customerDetails = orderTransformer.transformCustomerDetailsToDomain(customerDetailsRequest);
-        return customerDetailsRepository.save(customerDetails).getId();
+
+        String customerKey = customerDetails.getCustomerKey();
+        if (customerKey == null) {
+            return customerDetailsRepository.upsertCustomer(customerDetails).id();
+        }
+
+        KnownCustomer cached = customerIds.getIfPresent(customerKey);
+        if (cached != null && Objects.equals(cached.name(), customerDetails.getName())) {
+            return cached.id();
+        }
+
+        UpsertResult result = customerDetailsRepository.upsertCustomer(customerDetails);
+        cacheOnceCommitted(customerKey, new KnownCustomer(result.id(), customerDetails.getName()));
+        return result.id();
+    }
+
+    /**
+     * The row may have been inserted by the current transaction, so it isn't safe to hand the id to other orders
+     * until the transaction commits; on rollback the id would point at nothing.
+     */
+    private void cacheOnceCommitted(String customerKey, KnownCustomer customer) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            customerIds.put(customerKey, customer);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                customerIds.put(customerKey, customer);
+            }
+        });
+    }
+
+    private record KnownCustomer(long id, String name) {
     }
 }
@@ -0,0 +1,688 @@
+package com.springboot.learning.kit.service;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.GetResponse;
+import com.springboot.learning.kit.consumer.BackpressureController;
+import com.springboot.learning.kit.consumer.NewOrderConsumer;
+import com.springboot.learning.kit.dto.request.DlqReplayRequest;
+import com.springboot.learning.kit.dto.response.DlqReplayStatusResponse;
+import com.springboot.learning.kit.exception.OrderValidationException;
+import com.springboot.learning.kit.exception.ReplayAlreadyRunningException;
+import com.springboot.learning.kit.pool.ConnectionPoolController;
+import com.springboot.learning.kit.routes.ActiveMQRoutes;
+import com.springboot.learning.kit.routes.RabbitMQRoutes;
+import com.springboot.learning.kit.transformer.OrderMessageCodec;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.jms.BytesMessage;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import jakarta.jms.QueueBrowser;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.connection.AbstractConnectionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Replays the order placement dead letter queue of either broker onto its placement queue, so orders that failed
+ * during an outage are placed once it's over. One replay runs at a time, moving messages on parallelism threads
+ * at no more than rate-per-second between them. Each message is moved in a broker transaction, republished and
+ * removed from the dead letter queue together, so a replay can be stopped or fail at any point without losing
+ * or duplicating a message.
+ * <p>
+ * Messages can be filtered by order type and by the reason they were dead lettered. Messages left out stay in
+ * the dead letter queue; a dry run leaves every message there and only counts what would have been replayed.
+ * Every message a job reads is marked with its id, whether it's replayed or put back in the dead letter queue, so
+ * it isn't read twice by the same job, even if it fails again.
+ * <p>
+ * Replayed orders go through the live placement pipeline, so the replay waits whenever that is under strain:
+ * while broker consumers are paused by backpressure, the connection pool is saturated, or more than
+ * max-live-backlog orders are already waiting on the RabbitMQ placement queue.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DlqReplayService {
+
+    public static final String REPLAY_JOB_HEADER = "dlqReplayJob";
+
+    private static final String RABBITMQ = "rabbitmq";
+    private static final String ACTIVEMQ = "activemq";
+
+    @Value("${dlq.replay.default-rate-per-second:200}")
+    private int defaultRatePerSecond;
+
+    @Value("${dlq.replay.max-rate-per-second:2000}")
+    private int maxRatePerSecond;
+
+    @Value("${dlq.replay.default-parallelism:2}")
+    private int defaultParallelism;
+
+    @Value("${dlq.replay.max-parallelism:8}")
+    private int maxParallelism;
+
+    @Value("${dlq.replay.max-live-backlog:10000}")
+    private long maxLiveBacklog;
+
+    @Value("${dlq.replay.throttle-check-ms:1000}")
+    private long throttleCheckMillis;
+
+    @Value("${dlq.replay.receive-timeout-ms:1000}")
+    private long receiveTimeoutMillis;
+
+    @Value("${rmq.order.placement.queue}")
+    private String rabbitPlacementQueue;
+
+    @Value("${rmq.order.placement.queue.dlq}")
+    private String rabbitPlacementQueueDlq;
+
+    @Value("${amq.order.placement.queue}")
+    private String activeMQPlacementQueue;
+
+    @Value("${amq.order.placement.queue.dlq}")
+    private String activeMQPlacementQueueDlq;
+
+    private final org.springframework.amqp.rabbit.connection.ConnectionFactory rabbitConnectionFactory;
+    private final jakarta.jms.ConnectionFactory jmsConnectionFactory;
+    private final AmqpAdmin amqpAdmin;
+    private final OrderMessageCodec orderMessageCodec;
+    private final ConnectionPoolController connectionPoolController;
+    private final ObjectProvider<BackpressureController> backpressureController;
+    private final MeterRegistry meterRegistry;
+
+    private volatile ReplayJob currentJob;
+
+    @PostConstruct
+    void start() {
+        Gauge.builder("dlq.replay.running", this, service -> service.isRunning() ? 1 : 0)
+                .description("Whether a dead letter queue replay is running")
+                .register(meterRegistry);
+        Gauge.builder("dlq.replay.read", this,
+                        service -> service.currentJob == null ? 0 : service.currentJob.read.get())
+                .description("Messages read from the dead letter queue by the current or last replay")
+                .register(meterRegistry);
+        Gauge.builder("dlq.replay.throughput", this,
+                        service -> service.currentJob == null ? 0 : service.currentJob.messagesPerSecond())
+                .baseUnit("messages/s")
+                .description("Messages read per second by the current or last replay")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        ReplayJob job = currentJob;
+        if (job != null) {
+            job.stopRequested = true;
+        }
+    }
+
+    /**
+     * Starts replaying a dead letter queue in the background.
+     *
+     * @param request what to replay, and how fast
+     * @return the status of the replay just started
+     * @throws OrderValidationException      if the request is invalid
+     * @throws ReplayAlreadyRunningException if a replay is already running
+     */
+    public synchronized DlqReplayStatusResponse startReplay(DlqReplayRequest request) {
+        String broker = request.getBroker() == null ? null : request.getBroker().toLowerCase(Locale.ROOT);
+        if (!RABBITMQ.equals(broker) && !ACTIVEMQ.equals(broker)) {
+            throw new OrderValidationException("Broker must be rabbitmq or activemq");
+        }
+        int rate = request.getRatePerSecond() == null ? defaultRatePerSecond : request.getRatePerSecond();
+        if (rate < 1 || rate > maxRatePerSecond) {
+            throw new OrderValidationException("Rate must be between 1 and " + maxRatePerSecond + " per second");
+        }
+        int parallelism = request.getParallelism() == null ? defaultParallelism : request.getParallelism();
+        if (parallelism < 1 || parallelism > maxParallelism) {
+            throw new OrderValidationException("Parallelism must be between 1 and " + maxParallelism);
+        }
+        if (request.getMaxMessages() != null && request.getMaxMessages() < 1) {
+            throw new OrderValidationException("Max messages must be positive");
+        }
+        if (isRunning()) {
+            throw new ReplayAlreadyRunningException("Replay " + currentJob.id + " is already running");
+        }
+
+        ReplayJob job = new ReplayJob(broker, request, rate, request.isDryRun() ? 1 : parallelism);
+        currentJob = job;
+        log.info("Starting {} dead letter queue replay {}: {} per second on {} threads{}", broker, job.id, rate,
+                job.parallelism, job.dryRun ? ", dry run" : "");
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(job.parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "dlq-replay-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture.runAsync(() -> run(job, executor), executor)
+                .whenComplete((result, e) -> {
+                    executor.shutdown();
+                    job.finish(e);
+                    log.info("Dead letter queue replay {} {}: read {}, replayed {}, matched {}, skipped {}, failed {}",
+                            job.id, job.state, job.read.get(), job.replayed.get(), job.matched.get(),
+                            job.skipped.get(), job.failed.get());
+                });
+        return job.toStatus();
+    }
+
+    /**
+     * Asks the running replay to stop once the messages it's moving are done.
+     *
+     * @return the status of the replay, or null if none has run
+     */
+    public DlqReplayStatusResponse stopReplay() {
+        ReplayJob job = currentJob;
+        if (job == null) {
+            return null;
+        }
+        job.stopRequested = true;
+        return job.toStatus();
+    }
+
+    /**
+     * @return the status of the running or last replay, or null if none has run
+     */
+    public DlqReplayStatusResponse getStatus() {
+        ReplayJob job = currentJob;
+        return job == null ? null : job.toStatus();
+    }
+
+    private boolean isRunning() {
+        ReplayJob job = currentJob;
+        return job != null && job.finishedAt == null;
+    }
+
+    /**
+     * Runs the job's workers, the first on the calling thread and the rest on the job's other threads.
+     */
+    private void run(ReplayJob job, ExecutorService executor) {
+        if (RABBITMQ.equals(job.broker)) {
+            replayFromRabbitMQ(job, executor);
+        } else {
+            replayFromActiveMQ(job, executor);
+        }
+    }
+
+    private void replayFromRabbitMQ(ReplayJob job, ExecutorService executor) {
+        // The shared connection factory's channels are in confirm mode, which can't be combined with transactions
+        com.rabbitmq.client.ConnectionFactory factory =
+                ((AbstractConnectionFactory) rabbitConnectionFactory).getRabbitConnectionFactory();
+        try (Connection connection = factory.newConnection("dlq-replay-" + job.id)) {
+            // Messages that fail again come back to the end of the queue, so only what's there now is read
+            try (Channel channel = connection.createChannel()) {
+                job.remaining.set(Math.min(channel.messageCount(rabbitPlacementQueueDlq), job.maxMessages));
+            }
+            runWorkers(job, executor, () -> rabbitMQWorker(job, connection));
+        } catch (IOException | TimeoutException e) {
+            throw new IllegalStateException("Failed to connect to RabbitMQ", e);
+        }
+    }
+
+    private Void rabbitMQWorker(ReplayJob job, Connection connection) throws Exception {
+        // Every message read is moved in a transaction, onto the placement queue if it's replayed or else to the
+        // end of the dead letter queue, so none is held unacknowledged past the broker's consumer timeout
+        try (Channel channel = connection.createChannel()) {
+            channel.txSelect();
+            while (job.claim()) {
+                awaitLiveCapacity(job);
+                job.limiter.acquire();
+
+                GetResponse response = channel.basicGet(rabbitPlacementQueueDlq, false);
+                if (response == null) {
+                    return null;
+                }
+                long deliveryTag = response.getEnvelope().getDeliveryTag();
+                AMQP.BasicProperties properties = response.getProps();
+                Map<String, Object> headers = properties.getHeaders() == null ? Map.of() : properties.getHeaders();
+                Object replayJob = headers.get(REPLAY_JOB_HEADER);
+                if (replayJob != null && job.id.equals(replayJob.toString())) {
+                    // Back round to messages this job has already moved, so everything else has been read
+                    channel.basicReject(deliveryTag, true);
+                    channel.txCommit();
+                    return null;
+                }
+
+                boolean replay = job.matches(() -> orderType(response.getBody(), properties.getContentType(),
+                        properties.getContentEncoding()), rabbitMQReason(headers)) && !job.dryRun;
+                String destination = replay ? rabbitPlacementQueue : rabbitPlacementQueueDlq;
+                Map<String, Object> movedHeaders = new HashMap<>(headers);
+                movedHeaders.put(REPLAY_JOB_HEADER, job.id);
+                try {
+                    channel.basicPublish(RabbitMQRoutes.EXCHANGE, destination,
+                            properties.builder().headers(movedHeaders).build(), response.getBody());
+                    channel.basicAck(deliveryTag, false);
+                    channel.txCommit();
+                    if (replay) {
+                        job.replayed(1);
+                    }
+                } catch (IOException e) {
+                    job.failed();
+                    log.warn("Failed to move RabbitMQ message, leaving it in the dead letter queue ~ {}",
+                            e.getMessage());
+                    channel.txRollback();
+                    channel.basicReject(deliveryTag, true);
+                    channel.txCommit();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void replayFromActiveMQ(ReplayJob job, ExecutorService executor) {
+        job.remaining.set(job.maxMessages);
+        try (jakarta.jms.Connection connection = jmsConnectionFactory.createConnection()) {
+            connection.start();
+            if (job.dryRun) {
+                browseActiveMQ(job, connection);
+            } else {
+                runWorkers(job, executor, () -> activeMQWorker(job, connection));
+            }
+        } catch (JMSException e) {
+            throw new IllegalStateException("Failed to connect to ActiveMQ", e);
+        }
+    }
+
+    private Void activeMQWorker(ReplayJob job, jakarta.jms.Connection connection) throws Exception {
+        try (Session session = connection.createSession(true, Session.SESSION_TRANSACTED)) {
+            Queue dlq = session.createQueue(activeMQPlacementQueueDlq);
+            Queue placementQueue = session.createQueue(activeMQPlacementQueue);
+            // Messages already handled by this job, left out or replayed and failed again, are never read again
+            String selector = REPLAY_JOB_HEADER + " IS NULL OR " + REPLAY_JOB_HEADER + " <> '" + job.id + "'";
+            try (MessageConsumer consumer = session.createConsumer(dlq, selector);
+                 MessageProducer producer = session.createProducer(null)) {
+                while (job.claim()) {
+                    awaitLiveCapacity(job);
+                    job.limiter.acquire();
+
+                    jakarta.jms.Message message = consumer.receive(receiveTimeoutMillis);
+                    if (message == null) {
+                        return null;
+                    }
+                    byte[] body = body(message);
+                    boolean matches = job.matches(() -> orderType(body,
+                                    message.getStringProperty("contentType"),
+                                    message.getStringProperty("contentEncoding")),
+                            message.getStringProperty(ActiveMQRoutes.DLQ_REASON_HEADER));
+                    try {
+                        producer.send(matches ? placementQueue : dlq, copy(session, message, body, job.id));
+                        session.commit();
+                        if (matches) {
+                            job.replayed(1);
+                        }
+                    } catch (JMSException e) {
+                        job.failed();
+                        session.rollback();
+                        throw e;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private void browseActiveMQ(ReplayJob job, jakarta.jms.Connection connection) throws JMSException {
+        try (Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+             QueueBrowser browser = session.createBrowser(session.createQueue(activeMQPlacementQueueDlq))) {
+            Enumeration<?> messages = browser.getEnumeration();
+            while (messages.hasMoreElements() && job.claim()) {
+                job.limiter.acquire();
+                jakarta.jms.Message message = (jakarta.jms.Message) messages.nextElement();
+                byte[] body = body(message);
+                job.matches(() -> orderType(body, message.getStringProperty("contentType"),
+                        message.getStringProperty("contentEncoding")),
+                        message.getStringProperty(ActiveMQRoutes.DLQ_REASON_HEADER));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the worker on the job's threads and waits for them all; the first failure stops the rest.
+     */
+    private void runWorkers(ReplayJob job, ExecutorService executor, Callable<Void> worker) {
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 1; i < job.parallelism; i++) {
+            workers.add(CompletableFuture.supplyAsync(() -> callWorker(job, worker), executor));
+        }
+
+        // Every worker is waited for before the connection they share is closed
+        RuntimeException failure = null;
+        try {
+            callWorker(job, worker);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        for (CompletableFuture<Void> other : workers) {
+            try {
+                other.join();
+            } catch (RuntimeException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private Void callWorker(ReplayJob job, Callable<Void> worker) {
+        try {
+            return worker.call();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.stopRequested = true;
+            return null;
+        } catch (Exception e) {
+            job.stopRequested = true;
+            throw new IllegalStateException("Dead letter queue replay failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Waits while the live placement pipeline is under strain, so replayed orders don't add to it.
+     */
+    private void awaitLiveCapacity(ReplayJob job) throws InterruptedException {
+        while (!job.dryRun && !job.stopRequested && liveUnderStrain(job)) {
+            meterRegistry.counter("dlq.replay.throttled", "broker", job.broker).increment();
+            TimeUnit.MILLISECONDS.sleep(throttleCheckMillis);
+        }
+    }
+
+    private boolean liveUnderStrain(ReplayJob job) {
+        BackpressureController backpressure = backpressureController.getIfAvailable();
+        if ((backpressure != null && backpressure.isPaused()) || connectionPoolController.isSaturated()) {
+            return true;
+        }
+        return RABBITMQ.equals(job.broker) && job.liveBacklog(() -> {
+            QueueInformation queue = amqpAdmin.getQueueInfo(rabbitPlacementQueue);
+            return queue == null ? 0 : queue.getMessageCount();
+        }) > maxLiveBacklog;
+    }
+
+    private String orderType(byte[] body, String contentType, String contentEncoding) {
+        try {
+            return orderMessageCodec.decode(body, contentType, contentEncoding).getOrderType();
+        } catch (IOException | RuntimeException e) {
+            // Unreadable orders have no type, and are only replayed when not filtering by type
+            return null;
+        }
+    }
+
+    /**
+     * The reason a RabbitMQ message was dead lettered: the exception message recorded by {@link NewOrderConsumer},
+     * or else the broker's own reason for messages it dead lettered itself, such as rejected or expired.
+     */
+    private static String rabbitMQReason(Map<String, Object> headers) {
+        Object exceptionMessage = headers.get(NewOrderConsumer.EXCEPTION_MESSAGE_HEADER);
+        if (exceptionMessage != null) {
+            return exceptionMessage.toString();
+        }
+        if (headers.get("x-death") instanceof List<?> deaths && !deaths.isEmpty()
+                && deaths.get(0) instanceof Map<?, ?> death && death.get("reason") != null) {
+            return death.get("reason").toString();
+        }
+        return null;
+    }
+
+    private static byte[] body(jakarta.jms.Message message) throws JMSException {
+        if (message instanceof TextMessage text) {
+            return text.getText() == null ? new byte[0] : text.getText().getBytes(StandardCharsets.UTF_8);
+        }
+        if (message instanceof BytesMessage bytes) {
+            byte[] body = new byte[(int) bytes.getBodyLength()];
+            bytes.reset();
+            bytes.readBytes(body);
+            return body;
+        }
+        throw new JMSException("Unsupported message type: " + message.getClass().getSimpleName());
+    }
+
+    /**
+     * A copy of the message marked with the job's id. Received messages can't be changed, so they're copied.
+     */
+    private static jakarta.jms.Message copy(Session session, jakarta.jms.Message message, byte[] body, String jobId)
+            throws JMSException {
+        jakarta.jms.Message copy;
+        if (message instanceof TextMessage text) {
+            copy = session.createTextMessage(text.getText());
+        } else {
+            BytesMessage bytes = session.createBytesMessage();
+            bytes.writeBytes(body);
+            copy = bytes;
+        }
+        for (Enumeration<?> names = message.getPropertyNames(); names.hasMoreElements(); ) {
+            String name = (String) names.nextElement();
+            if (!name.startsWith("JMSX")) {
+                copy.setObjectProperty(name, message.getObjectProperty(name));
+            }
+        }
+        copy.setJMSCorrelationID(message.getJMSCorrelationID());
+        copy.setJMSType(message.getJMSType());
+        copy.setStringProperty(REPLAY_JOB_HEADER, jobId);
+        return copy;
+    }
+
+    /**
+     * Which dead lettered messages a replay moves: those dead lettered for a reason containing errorReason, and
+     * of the given order type, each ignoring case and only checked if set.
+     *
+     * @param orderType   the order type to replay, or null for all
+     * @param errorReason text the dead letter reason must contain, or null for any reason
+     */
+    public record ReplayFilter(String orderType, String errorReason) {
+
+        public ReplayFilter {
+            errorReason = errorReason == null ? null : errorReason.toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * Checks a message against the filter. The order type is only read, which means parsing the whole
+         * message, if the reason matches and the filter is on order type.
+         *
+         * @param reason    why the message was dead lettered, or null if not recorded
+         * @param orderType reads the message's order type, or null if it can't be parsed
+         * @return true if the message should be replayed
+         * @throws JMSException if the message could not be read
+         */
+        public boolean matches(String reason, OrderTypeReader orderType) throws JMSException {
+            return (errorReason == null || (reason != null && reason.toLowerCase(Locale.ROOT).contains(errorReason)))
+                    && (this.orderType == null || this.orderType.equalsIgnoreCase(orderType.read()));
+        }
+    }
+
+    /**
+     * Spaces out permits evenly across every thread of a job. Time a job spends waiting on the live pipeline
+     * isn't made up afterwards with a burst of permits.
+     */
+    public static final class RateLimiter {
+
+        private final long intervalNanos;
+        private final LongSupplier nanoClock;
+        private long nextPermitNanos;
+
+        public RateLimiter(int permitsPerSecond) {
+            this(permitsPerSecond, System::nanoTime);
+        }
+
+        public RateLimiter(int permitsPerSecond, LongSupplier nanoClock) {
+            this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+            this.nanoClock = nanoClock;
+            this.nextPermitNanos = nanoClock.getAsLong();
+        }
+
+        /**
+         * Waits for the next permit.
+         */
+        public void acquire() throws InterruptedException {
+            long waitNanos = reserve();
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        }
+
+        /**
+         * Takes the next permit.
+         *
+         * @return how long to wait before using it, in nanoseconds
+         */
+        public synchronized long reserve() {
+            long now = nanoClock.getAsLong();
+            long permitAt = Math.max(now, nextPermitNanos);
+            nextPermitNanos = permitAt + intervalNanos;
+            return permitAt - now;
+        }
+    }
+
+    @FunctionalInterface
+    public interface OrderTypeReader {
+        String read() throws JMSException;
+    }
+
+    private final class ReplayJob {
+
+        private final String id = UUID.randomUUID().toString();
+        private final String broker;
+        private final boolean dryRun;
+        private final int parallelism;
+        private final long maxMessages;
+        private final ReplayFilter filter;
+        private final RateLimiter limiter;
+        private final Instant startedAt = Instant.now();
+
+        private final AtomicLong remaining = new AtomicLong();
+        private final AtomicLong read = new AtomicLong();
+        private final AtomicLong matched = new AtomicLong();
+        private final AtomicLong replayed = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        private volatile boolean stopRequested;
+        private volatile String state = "RUNNING";
+        private volatile String error;
+        private volatile Instant finishedAt;
+        private volatile long liveBacklog;
+        private volatile long liveBacklogReadAt;
+
+        private ReplayJob(String broker, DlqReplayRequest request, int rate, int parallelism) {
+            this.broker = broker;
+            this.dryRun = request.isDryRun();
+            this.parallelism = parallelism;
+            this.maxMessages = request.getMaxMessages() == null ? Long.MAX_VALUE : request.getMaxMessages();
+            this.filter = new ReplayFilter(request.getOrderType(), request.getErrorReason());
+            this.limiter = new RateLimiter(rate);
+        }
+
+        /**
+         * Claims the next message for a worker.
+         *
+         * @return false once the job is stopping or has read all it's meant to
+         */
+        boolean claim() {
+            return !stopRequested && remaining.getAndDecrement() > 0;
+        }
+
+        /**
+         * Counts a message read and whether it passes the filters, reading its order type only if filtering on it.
+         */
+        boolean matches(OrderTypeReader orderType, String reason) throws JMSException {
+            read.incrementAndGet();
+            boolean matches = filter.matches(reason, orderType);
+            (matches ? matched : skipped).incrementAndGet();
+            meterRegistry.counter("dlq.replay.messages", "broker", broker, "result", matches ? "matched" : "skipped")
+                    .increment();
+            return matches;
+        }
+
+        void replayed(int count) {
+            replayed.addAndGet(count);
+            meterRegistry.counter("dlq.replay.messages", "broker", broker, "result", "replayed").increment(count);
+        }
+
+        void failed() {
+            failed.incrementAndGet();
+            meterRegistry.counter("dlq.replay.messages", "broker", broker, "result", "failed").increment();
+        }
+
+        /**
+         * The live placement queue's backlog, read at most once per throttle check across all threads.
+         */
+        long liveBacklog(LongSupplier reader) {
+            long now = System.currentTimeMillis();
+            if (now - liveBacklogReadAt >= throttleCheckMillis) {
+                liveBacklogReadAt = now;
+                liveBacklog = reader.getAsLong();
+            }
+            return liveBacklog;
+        }
+
+        double messagesPerSecond() {
+            Instant end = finishedAt == null ? Instant.now() : finishedAt;
+            long millis = Math.max(1, Duration.between(startedAt, end).toMillis());
+            return read.get() * 1000.0 / millis;
+        }
+
+        void finish(Throwable e) {
+            if (e != null) {
+                Throwable cause = e.getCause() == null ? e : e.getCause();
+                error = cause.getMessage();
+                state = "FAILED";
+                log.error("Dead letter queue replay {} failed", id, cause);
+            } else {
+                state = stopRequested ? "STOPPED" : "COMPLETED";
+            }
+            finishedAt = Instant.now();
+        }
+
+        DlqReplayStatusResponse toStatus() {
+            DlqReplayStatusResponse status = new DlqReplayStatusResponse();
+            status.setJobId(id);
+            status.setBroker(broker);
+            status.setState(state);
+            status.setDryRun(dryRun);
+            status.setRead(read.get());
+            status.setMatched(matched.get());
+            status.setReplayed(replayed.get());
+            status.setSkipped(skipped.get());
+            status.setFailed(failed.get());
+            status.setMessagesPerSecond(messagesPerSecond());
+            status.setStartedAt(startedAt);
+            status.setFinishedAt(finishedAt);
+            status.setError(error);
+            return status;
+        }
+    }
+}
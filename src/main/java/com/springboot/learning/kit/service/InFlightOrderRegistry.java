@@ -0,0 +1,84 @@
+package com.springboot.learning.kit.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks orders that have entered the placement pipeline but haven't been saved yet. A cancellation for one of
+ * these is recorded here instead of being written to the database, and the placement pipeline drops the order
+ * before saving it, rather than saving it only to cancel it straight after.
+ * <p>
+ * If the cancellation arrives once the order is already being saved, it is held until the save completes and
+ * then handed back to the placement pipeline to apply. In journal mode an order counts as being saved until the
+ * journal flusher has committed it.
+ * <p>
+ * As an order can only be in flight once, a second copy arriving while the first is still in the pipeline is
+ * turned away at {@link #register(long)}.
+ */
+@Component
+public class InFlightOrderRegistry {
+
+    private enum State {
+        ACCEPTED,
+        CANCELLED,
+        PERSISTING,
+        CANCEL_AFTER_PERSIST
+    }
+
+    private final Map<Long, State> orders = new ConcurrentHashMap<>();
+
+    /**
+     * Marks the order as in flight, from the moment the placement pipeline accepts it.
+     *
+     * @param orderUUID the UUID of the order
+     * @return false if the order is already in flight, in which case this copy must be dropped
+     */
+    public boolean register(long orderUUID) {
+        return orders.putIfAbsent(orderUUID, State.ACCEPTED) == null;
+    }
+
+    /**
+     * Records a cancellation for the order, if it's in flight.
+     *
+     * @param orderUUID the UUID of the order
+     * @return true if the order is in flight and the placement pipeline will take care of the cancellation,
+     * false if the cancellation has to be applied to the saved order
+     */
+    public boolean cancel(long orderUUID) {
+        return orders.computeIfPresent(orderUUID, (uuid, state) -> switch (state) {
+            case ACCEPTED, CANCELLED -> State.CANCELLED;
+            case PERSISTING, CANCEL_AFTER_PERSIST -> State.CANCEL_AFTER_PERSIST;
+        }) != null;
+    }
+
+    /**
+     * Called by the placement pipeline just before the order is saved.
+     *
+     * @param orderUUID the UUID of the order
+     * @return false if the order has been cancelled and must not be saved
+     */
+    public boolean beginPersist(long orderUUID) {
+        State state = orders.computeIfPresent(orderUUID,
+                (uuid, current) -> current == State.ACCEPTED ? State.PERSISTING : current);
+        return state != State.CANCELLED;
+    }
+
+    /**
+     * Removes the order once the placement pipeline is done with it, whether it was saved or not.
+     *
+     * @param orderUUID the UUID of the order
+     * @return true if a cancellation arrived while the order was being saved
+     */
+    public boolean complete(long orderUUID) {
+        return orders.remove(orderUUID) == State.CANCEL_AFTER_PERSIST;
+    }
+
+    /**
+     * @return the number of orders in flight
+     */
+    public int size() {
+        return orders.size();
+    }
+}
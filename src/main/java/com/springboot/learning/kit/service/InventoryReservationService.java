@@ -0,0 +1,299 @@
+package com.springboot.learning.kit.service;
+
+import com.springboot.learning.kit.dto.request.OrderItemRequest;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import com.springboot.learning.kit.exception.OrderProcessingException;
+import com.springboot.learning.kit.exception.OrderValidationException;
+import com.springboot.learning.kit.inventory.StockLedger;
+import com.springboot.learning.kit.repository.ProductStockRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reserves stock for orders before they are saved. Reservations are made against a {@link StockLedger} held in
+ * memory, and the changes are written back to product_stock in the background every flush interval, so a
+ * popular product doesn't turn into a single row lock that every order has to queue on.
+ * <p>
+ * The ledger reads each product's stock once, the first time it's ordered, so restocking by changing
+ * product_stock directly is only seen after a restart. Products without a product_stock row aren't tracked and
+ * can always be ordered.
+ * <p>
+ * As the ledger assumes it's the only writer of stock, reservation may only be enabled on one instance at a time.
+ * This is enforced with a PostgreSQL advisory lock held for as long as the service runs: an instance that can't
+ * take it fails to start rather than selling the same stock twice. The lock belongs to the database session, so
+ * it's held on a connection of its own, opened straight to the primary rather than taken from the pool, and
+ * checked before every flush. If that connection is lost, reservations fail as retryable until the lock is taken
+ * back, and the ledger then starts afresh from product_stock, in case another instance reserved stock meanwhile.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InventoryReservationService {
+
+    /**
+     * Key of the advisory lock held by the one instance reserving stock.
+     */
+    private static final long LEDGER_LOCK_KEY = 0x53544F434B4C4447L;
+
+    @Value("${inventory.reservation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.flush-interval-ms:200}")
+    private long flushIntervalMillis;
+
+    private final ProductStockRepository productStockRepository;
+    private final HikariDataSource primaryDataSource;
+    private final MeterRegistry meterRegistry;
+
+    private Connection ledgerLock;
+    private volatile boolean lockHeld;
+    private volatile StockLedger ledger;
+    private ScheduledExecutorService flusher;
+    private Counter reserved;
+    private Counter insufficient;
+
+    @PostConstruct
+    void start() throws SQLException {
+        if (!enabled) {
+            return;
+        }
+
+        ledgerLock = tryLedgerLock();
+        if (ledgerLock == null) {
+            throw new IllegalStateException("Inventory reservation is already enabled on another instance; it can "
+                    + "only run on one at a time");
+        }
+        lockHeld = true;
+        ledger = newLedger();
+        reserved = meterRegistry.counter("inventory.reservations", "result", "reserved");
+        insufficient = meterRegistry.counter("inventory.reservations", "result", "insufficient");
+        Gauge.builder("inventory.pending.products", this, service -> service.ledger.getPendingProducts())
+                .description("Products with stock changes not yet written to the database")
+                .register(meterRegistry);
+        Gauge.builder("inventory.ledger.lock.held", this, service -> service.lockHeld ? 1 : 0)
+                .description("Whether this instance holds the lock that lets it reserve stock")
+                .register(meterRegistry);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inventory-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            checkLedgerLock();
+            flush();
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (flusher == null) {
+            return;
+        }
+
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Write whatever was reserved since the last run, so it isn't sold again after a restart
+        flush();
+        releaseLedgerLock();
+    }
+
+    /**
+     * Reserves the stock for every item in the order, or for none of them.
+     *
+     * @param orderRequest the order to reserve stock for
+     * @return the quantities reserved per product, to be passed to {@link #release(Map)} if the order fails
+     * @throws OrderProcessingException              if any product doesn't have enough stock
+     * @throws TransientDataAccessResourceException if this instance has lost the lock that lets it reserve stock
+     */
+    public Map<Long, Integer> reserve(OrderRequest orderRequest) {
+        if (!enabled) {
+            return Collections.emptyMap();
+        }
+
+        Map<Long, Integer> quantities = quantitiesOf(orderRequest);
+        if (quantities.isEmpty()) {
+            return quantities;
+        }
+        if (!lockHeld) {
+            throw new TransientDataAccessResourceException("Stock can't be reserved for order "
+                    + orderRequest.getUUID() + " until the inventory ledger lock is taken back");
+        }
+
+        if (!ledger.reserve(quantities)) {
+            insufficient.increment();
+            throw new OrderProcessingException("Insufficient stock for order: " + orderRequest.getUUID());
+        }
+        reserved.increment();
+        return quantities;
+    }
+
+    /**
+     * Returns stock reserved for an order that wasn't saved.
+     *
+     * @param quantities the quantities returned by {@link #reserve(OrderRequest)}
+     */
+    public void release(Map<Long, Integer> quantities) {
+        if (enabled && !quantities.isEmpty()) {
+            ledger.release(quantities);
+        }
+    }
+
+    /**
+     * Returns the stock reserved for an order that was accepted but won't be saved after all, for callers that no
+     * longer have the quantities {@link #reserve(OrderRequest)} returned, such as the journal flusher.
+     *
+     * @param orderRequest the order stock was reserved for
+     */
+    public void releaseOrder(OrderRequest orderRequest) {
+        if (enabled) {
+            ledger.release(quantitiesOf(orderRequest));
+        }
+    }
+
+    /**
+     * Writes the stock changes made since the last flush. Changes that fail to write are kept for the next one.
+     */
+    void flush() {
+        Map<Long, Integer> deltas = ledger.drainPending();
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            productStockRepository.applyDeltas(deltas);
+        } catch (Exception e) {
+            log.error("Failed to write stock changes for {} products, will retry", deltas.size(), e);
+            ledger.restorePending(deltas);
+        }
+    }
+
+    /**
+     * Runs on the flusher thread before each flush. While the lock's connection is alive the lock is held, as
+     * nothing else unlocks it. Once it's lost, the lock is only taken back after every change reserved under it has
+     * been written, so the fresh ledger reads stock that includes them.
+     */
+    private void checkLedgerLock() {
+        if (lockHeld) {
+            try {
+                if (ledgerLock.isValid(1)) {
+                    return;
+                }
+            } catch (SQLException e) {
+                log.debug("Inventory ledger lock check failed", e);
+            }
+            lockHeld = false;
+            closeQuietly(ledgerLock);
+            log.error("Lost the inventory ledger lock, stock won't be reserved until it is taken back");
+        }
+
+        flush();
+        if (ledger.getPendingProducts() > 0) {
+            return;
+        }
+        try {
+            Connection connection = tryLedgerLock();
+            if (connection == null) {
+                log.warn("Inventory ledger lock is held by another instance, stock won't be reserved here");
+                return;
+            }
+            ledgerLock = connection;
+            ledger = newLedger();
+            lockHeld = true;
+            log.info("Took back the inventory ledger lock, reading stock afresh");
+        } catch (SQLException e) {
+            log.warn("Failed to take back the inventory ledger lock, will retry ~ {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Takes the advisory lock on a new connection to the primary, outside the pool, which is kept open for as long
+     * as the lock is held.
+     *
+     * @return the connection holding the lock, or null if another instance holds it
+     */
+    private Connection tryLedgerLock() throws SQLException {
+        Connection connection = DriverManager.getConnection(primaryDataSource.getJdbcUrl(),
+                primaryDataSource.getUsername(), primaryDataSource.getPassword());
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, LEDGER_LOCK_KEY);
+            try (ResultSet result = statement.executeQuery()) {
+                if (result.next() && result.getBoolean(1)) {
+                    return connection;
+                }
+            }
+        } catch (SQLException e) {
+            closeQuietly(connection);
+            throw e;
+        }
+        closeQuietly(connection);
+        return null;
+    }
+
+    private void releaseLedgerLock() {
+        // Closing the session releases the lock
+        if (lockHeld) {
+            lockHeld = false;
+            closeQuietly(ledgerLock);
+        }
+    }
+
+    private StockLedger newLedger() {
+        return new StockLedger(productId -> productStockRepository.findAvailableQty(productId)
+                .orElse(StockLedger.UNTRACKED));
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("Failed to close the inventory ledger lock connection", e);
+        }
+    }
+
+    /**
+     * Adds up the quantity per product, as the same product may appear on more than one line of an order.
+     */
+    private static Map<Long, Integer> quantitiesOf(OrderRequest orderRequest) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        if (orderRequest.getOrderItems() == null) {
+            return quantities;
+        }
+
+        for (OrderItemRequest item : orderRequest.getOrderItems()) {
+            if (item.getProductId() == null) {
+                throw new OrderValidationException("Order item product id cannot be null");
+            }
+            if (item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new OrderValidationException("Order item quantity must be positive");
+            }
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+}
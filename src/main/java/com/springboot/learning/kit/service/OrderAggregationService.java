@@ -0,0 +1,129 @@
+package com.springboot.learning.kit.service;
+
+import com.springboot.learning.kit.batch.MicroBatcher;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import com.springboot.learning.kit.exception.OrderProcessingException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Groups orders placed through ActiveMQ so that each group is saved in one transaction, rather than one commit
+ * per message. A group is closed once it holds completion-size orders, or completion-timeout-ms after its first
+ * order arrived, and is saved with {@link OrderProcessingService#processNewOrders(List)}, which falls back to
+ * saving the orders one at a time if the group can't be saved together.
+ * <p>
+ * The JMS consumer placing an order waits for the outcome of that order alone, and the placement route consumes in
+ * client acknowledge mode, so each message is only acknowledged once its order is saved or dead lettered. Orders
+ * still waiting in a group when the application dies are delivered again by the broker. So are orders whose group
+ * was committed just before it died; saving one of those again fails on its order key, so it ends up in the dead
+ * letter queue rather than being placed twice. Otherwise only messages whose order failed go to the dead letter
+ * queue. A group can't hold more orders than there are consumers waiting, so the route runs with more consumers in
+ * this mode.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderAggregationService {
+
+    @Value("${amq.order.placement.aggregation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${amq.order.placement.aggregation.completion-size:50}")
+    private int completionSize;
+
+    @Value("${amq.order.placement.aggregation.completion-timeout-ms:20}")
+    private long completionTimeoutMillis;
+
+    @Value("${amq.order.placement.aggregation.workers:2}")
+    private int workers;
+
+    private final OrderProcessingService orderProcessingService;
+    private final MeterRegistry meterRegistry;
+
+    private MicroBatcher<PendingOrder> batcher;
+    private DistributionSummary groupSizes;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+
+        groupSizes = DistributionSummary.builder("orders.aggregation.group.size")
+                .description("Number of ActiveMQ orders saved per transaction")
+                .register(meterRegistry);
+
+        // Every consumer waits on its own order, so there are never more orders queued than consumers
+        batcher = new MicroBatcher<>("order-aggregation", completionSize, Duration.ofMillis(completionTimeoutMillis),
+                completionSize * workers, this::placeGroup);
+        Gauge.builder("orders.aggregation.queue.size", batcher, MicroBatcher::getQueueSize)
+                .description("ActiveMQ orders waiting to be grouped")
+                .register(meterRegistry);
+        batcher.start(workers);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (batcher != null) {
+            batcher.stop();
+        }
+    }
+
+    /**
+     * @return true if ActiveMQ orders should be grouped before they are saved
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Places the order as part of the next group, and waits until it has been saved.
+     *
+     * @param orderRequest the order to place
+     * @throws RuntimeException the order's own failure, if it could not be placed
+     */
+    public void placeOrder(OrderRequest orderRequest) {
+        PendingOrder pending = new PendingOrder(orderRequest, new CompletableFuture<>());
+        try {
+            batcher.submit(pending).thenCompose(placed -> pending.outcome()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OrderProcessingException("Interrupted while placing order: " + orderRequest.getUUID(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new OrderProcessingException("Failed to place order: " + orderRequest.getUUID(), e);
+        }
+    }
+
+    private void placeGroup(List<PendingOrder> group) {
+        groupSizes.record(group.size());
+        List<RuntimeException> failures = orderProcessingService.processNewOrders(
+                group.stream().map(PendingOrder::orderRequest).toList());
+
+        for (int i = 0; i < group.size(); i++) {
+            RuntimeException failure = failures.get(i);
+            if (failure == null) {
+                group.get(i).outcome().complete(null);
+            } else {
+                group.get(i).outcome().completeExceptionally(failure);
+            }
+        }
+    }
+
+    private record PendingOrder(OrderRequest orderRequest, CompletableFuture<Void> outcome) {
+    }
+}
@@ -0,0 +1,134 @@
+package com.springboot.learning.kit.service;
+
+import com.springboot.learning.kit.batch.MicroBatcher;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import com.springboot.learning.kit.exception.OrderProcessingException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Optional batching stage for the order write path. When enabled, orders coming in from HTTP, RabbitMQ and
+ * ActiveMQ are grouped across callers and written together in a single transaction, which spreads the cost of
+ * the commit over the whole batch. Each caller still blocks until its own order has been committed or rejected.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderBatchingService {
+
+    @Value("${order.batching.enabled:false}")
+    private boolean enabled;
+
+    @Value("${order.batching.max-size:100}")
+    private int maxBatchSize;
+
+    @Value("${order.batching.max-wait-ms:10}")
+    private long maxWaitMillis;
+
+    @Value("${order.batching.workers:2}")
+    private int workers;
+
+    @Value("${order.batching.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${order.batching.result-timeout-ms:30000}")
+    private long resultTimeoutMillis;
+
+    private final OrderPersistenceService orderPersistenceService;
+    private final MeterRegistry meterRegistry;
+
+    private MicroBatcher<OrderRequest> batcher;
+    private DistributionSummary batchSizes;
+    private Timer persistTimer;
+
+    @PostConstruct
+    void start() {
+        persistTimer = Timer.builder("orders.persist")
+                .description("Time taken to save and commit an order, including any wait for its batch")
+                .register(meterRegistry);
+        if (!enabled) {
+            return;
+        }
+
+        batchSizes = DistributionSummary.builder("orders.batch.size")
+                .description("Number of orders written per transaction")
+                .register(meterRegistry);
+        batcher = new MicroBatcher<>("order", maxBatchSize, Duration.ofMillis(maxWaitMillis), queueCapacity,
+                this::persistBatch);
+        Gauge.builder("orders.batch.queue.size", batcher, MicroBatcher::getQueueSize)
+                .description("Orders waiting to be batched")
+                .register(meterRegistry);
+        batcher.start(workers);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (batcher != null) {
+            batcher.stop();
+        }
+    }
+
+    /**
+     * Saves the order, either on its own or as part of the next batch, and waits for the outcome.
+     *
+     * @param orderRequest the order to save
+     * @throws OrderProcessingException if the order could not be saved, or its batch wasn't handled within
+     *                                  order.batching.result-timeout-ms, in which case it may still be saved
+     */
+    public void saveOrder(OrderRequest orderRequest) {
+        persistTimer.record(() -> save(orderRequest));
+    }
+
+    /**
+     * Saves orders that arrived together, for example in one batch of broker messages, in a single transaction.
+     * They aren't combined with other callers' orders.
+     *
+     * @param orderRequests the orders to save
+     */
+    public void saveOrders(List<OrderRequest> orderRequests) {
+        persistTimer.record(() -> orderPersistenceService.persistOrders(orderRequests));
+    }
+
+    private void save(OrderRequest orderRequest) {
+        if (!enabled) {
+            orderPersistenceService.persistOrder(orderRequest);
+            return;
+        }
+
+        try {
+            batcher.submit(orderRequest).get(resultTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OrderProcessingException("Interrupted while saving order: " + orderRequest.getUUID(), e);
+        } catch (TimeoutException e) {
+            // The batch may still commit, and a copy of the order placed again is then caught by its order key
+            throw new OrderProcessingException("Timed out after " + resultTimeoutMillis + " ms waiting for order "
+                    + orderRequest.getUUID() + " to be saved", e);
+        } catch (ExecutionException e) {
+            // Surface the original failure, so callers see the same exceptions as without batching
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new OrderProcessingException("Failed to save order: " + orderRequest.getUUID(), e);
+        }
+    }
+
+    private void persistBatch(List<OrderRequest> orderRequests) {
+        batchSizes.record(orderRequests.size());
+        orderPersistenceService.persistOrders(orderRequests);
+    }
+}
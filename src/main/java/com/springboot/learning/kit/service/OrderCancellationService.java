@@ -0,0 +1,154 @@
+package com.springboot.learning.kit.service;
+
+import com.springboot.learning.kit.batch.MicroBatcher;
+import com.springboot.learning.kit.dto.request.OrderCancellationRequest;
+import com.springboot.learning.kit.exception.OrderProcessingException;
+import com.springboot.learning.kit.exception.OrderValidationException;
+import com.springboot.learning.kit.repository.OrderItemStatusRepository.CancelledItem;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Cancels orders on request from the cancellation queues. Orders still in flight in the placement pipeline are
+ * dropped there before they are saved, or cancelled as soon as they are; in journal mode that is once the journal
+ * flusher has saved them, so a cancellation for an order still waiting in the journal isn't lost. The rest are
+ * grouped into batches, each cancelling the items of all its orders with a single UPDATE in one transaction. The
+ * stock those items had reserved is then handed back to the inventory ledger, which writes it to product_stock
+ * with its next flush.
+ * <p>
+ * Only items that haven't shipped can be cancelled, anything further along is left as it is.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderCancellationService {
+
+    @Value("${order.cancellation.max-batch-size:200}")
+    private int maxBatchSize;
+
+    @Value("${order.cancellation.max-wait-ms:20}")
+    private long maxWaitMillis;
+
+    @Value("${order.cancellation.workers:1}")
+    private int workers;
+
+    @Value("${order.cancellation.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private final OrderStatusService orderStatusService;
+    private final InventoryReservationService inventoryReservationService;
+    private final InFlightOrderRegistry inFlightOrderRegistry;
+    private final MeterRegistry meterRegistry;
+
+    private MicroBatcher<Long> batcher;
+    private DistributionSummary batchSizes;
+    private Counter cancelled;
+    private Counter cancelledInFlight;
+    private Counter unchanged;
+
+    @PostConstruct
+    void start() {
+        batchSizes = DistributionSummary.builder("order.cancellations.batch.size")
+                .description("Number of orders cancelled per transaction")
+                .register(meterRegistry);
+        cancelled = meterRegistry.counter("order.cancellations", "result", "cancelled");
+        cancelledInFlight = meterRegistry.counter("order.cancellations", "result", "in_flight");
+        unchanged = meterRegistry.counter("order.cancellations", "result", "unchanged");
+        Gauge.builder("order.inflight.size", inFlightOrderRegistry, InFlightOrderRegistry::size)
+                .description("Orders accepted by the placement pipeline and not yet saved")
+                .register(meterRegistry);
+
+        batcher = new MicroBatcher<>("order-cancellation", maxBatchSize, Duration.ofMillis(maxWaitMillis),
+                queueCapacity, this::cancelBatch);
+        Gauge.builder("order.cancellations.queue.size", batcher, MicroBatcher::getQueueSize)
+                .description("Cancellations waiting to be batched")
+                .register(meterRegistry);
+        batcher.start(workers);
+    }
+
+    @PreDestroy
+    void stop() {
+        batcher.stop();
+    }
+
+    /**
+     * Cancels the order, and waits until the cancellation has been committed or handed to the placement pipeline.
+     *
+     * @param request the cancellation
+     * @throws OrderValidationException if the cancellation has no order id
+     * @throws OrderProcessingException if the cancellation could not be written
+     */
+    public void cancelOrder(OrderCancellationRequest request) {
+        if (request.getOrderId() == null) {
+            throw new OrderValidationException("Order id is required");
+        }
+
+        long orderId = request.getOrderId();
+        if (inFlightOrderRegistry.cancel(orderId)) {
+            cancelledInFlight.increment();
+            log.info("Cancelled order {} while in flight ~ {}", orderId, request.getReason());
+            return;
+        }
+
+        try {
+            batcher.submit(orderId).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OrderProcessingException("Interrupted while cancelling order: " + orderId, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new OrderProcessingException("Failed to cancel order: " + orderId, e);
+        }
+    }
+
+    /**
+     * Cancels an order that was cancelled while the placement pipeline was saving it. Called once it's saved;
+     * doesn't wait for the outcome.
+     *
+     * @param orderId the UUID of the order
+     */
+    public void cancelSavedOrder(long orderId) {
+        batcher.submit(orderId).whenComplete((result, e) -> {
+            if (e != null) {
+                log.error("Failed to cancel order {} after it was saved", orderId, e);
+            }
+        });
+    }
+
+    private void cancelBatch(List<Long> orderIds) {
+        Set<Long> distinctOrderIds = new LinkedHashSet<>(orderIds);
+        batchSizes.record(distinctOrderIds.size());
+        List<CancelledItem> items = orderStatusService.cancelOrders(distinctOrderIds);
+
+        // Stock only goes back once the items are cancelled for good
+        Map<Long, Integer> released = new TreeMap<>();
+        Set<Long> cancelledOrders = new LinkedHashSet<>();
+        for (CancelledItem item : items) {
+            released.merge(Long.parseLong(item.productId()), item.quantity(), Integer::sum);
+            cancelledOrders.add(item.orderId());
+        }
+        inventoryReservationService.release(released);
+        cancelledOrders.forEach(orderStatusService::evictOrderStatus);
+
+        cancelled.increment(cancelledOrders.size());
+        unchanged.increment(distinctOrderIds.size() - cancelledOrders.size());
+    }
+}
@@ -0,0 +1,100 @@
+package com.springboot.learning.kit.service;
+
+import com.springboot.learning.kit.cache.RotatingBloomFilter;
+import com.springboot.learning.kit.repository.OrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Spots orders that have already been placed, such as broker redeliveries and client retries, before any work is
+ * done for them. Recently placed UUIDs are kept in a {@link RotatingBloomFilter}; the database is only asked
+ * when the filter reports a possible hit, so new orders, by far the common case, cost no extra query.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderDeduplicationService {
+
+    @Value("${order.dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${order.dedup.orders-per-generation:1000000}")
+    private long ordersPerGeneration;
+
+    @Value("${order.dedup.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private final OrderRepository orderRepository;
+    private final MeterRegistry meterRegistry;
+
+    private RotatingBloomFilter recentOrders;
+    private Counter filterMisses;
+    private Counter confirmedDuplicates;
+    private Counter falsePositives;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+
+        recentOrders = new RotatingBloomFilter(ordersPerGeneration, falsePositiveRate);
+        log.info("Duplicate order filter sized for {} orders per generation, using {} KB",
+                ordersPerGeneration, recentOrders.getMemoryBytes() / 1024);
+
+        filterMisses = meterRegistry.counter("orders.dedup.checks", "result", "new");
+        confirmedDuplicates = meterRegistry.counter("orders.dedup.checks", "result", "duplicate");
+        falsePositives = meterRegistry.counter("orders.dedup.checks", "result", "false_positive");
+        Gauge.builder("orders.dedup.false.positive.rate", this, OrderDeduplicationService::observedFalsePositiveRate)
+                .description("Share of new orders the filter flagged as possible duplicates")
+                .register(meterRegistry);
+        Gauge.builder("orders.dedup.filter.memory", recentOrders, RotatingBloomFilter::getMemoryBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param orderUUID the UUID of the incoming order
+     * @return true if an order with this UUID has already been saved
+     */
+    public boolean isDuplicate(Long orderUUID) {
+        if (!enabled || orderUUID == null) {
+            return false;
+        }
+
+        if (!recentOrders.mightContain(orderUUID)) {
+            filterMisses.increment();
+            return false;
+        }
+
+        if (orderRepository.existsByKey(orderUUID)) {
+            confirmedDuplicates.increment();
+            return true;
+        }
+
+        falsePositives.increment();
+        return false;
+    }
+
+    /**
+     * Remembers an order once it has been saved, so later copies of it are caught.
+     *
+     * @param orderUUID the UUID of the saved order
+     */
+    public void recordPlaced(Long orderUUID) {
+        if (enabled && orderUUID != null) {
+            recentOrders.put(orderUUID);
+        }
+    }
+
+    private double observedFalsePositiveRate() {
+        double negatives = filterMisses.count() + falsePositives.count();
+        return negatives == 0 ? 0 : falsePositives.count() / negatives;
+    }
+}
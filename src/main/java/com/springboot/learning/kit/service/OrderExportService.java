@@ -0,0 +1,196 @@
+package com.springboot.learning.kit.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.learning.kit.domain.OrderType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams orders joined with their items straight from the database to the client, one row per order item.
+ * <p>
+ * Postgres only uses a server-side cursor when the fetch size is set and autocommit is off, so the query runs in a
+ * read-only transaction. Rows are written out as they are fetched without building any entities, so heap use stays
+ * the same however large the export is, and a slow client simply slows down the fetching.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderExportService {
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    private static final String[] COLUMNS = {
+            "order_id", "order_type", "customer_details_id", "customer_address_id", "total_amount", "currency",
+            "order_created", "item_id", "product_id", "quantity", "status", "price_per_unit"
+    };
+
+    @Value("${order.export.fetch-size:1000}")
+    private int fetchSize;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Writes every order item matching the filters to the output stream.
+     *
+     * @param format    CSV with a header line, or one JSON object per line
+     * @param orderType the order type to export, or null for all types
+     * @param from      the earliest creation time to include, or null for no lower bound
+     * @param to        the creation time to stop before, or null for no upper bound
+     * @param output    where the export is written
+     * @return the number of rows written
+     */
+    public long export(Format format, OrderType orderType, LocalDateTime from, LocalDateTime to,
+                       OutputStream output) throws IOException {
+        StringBuilder sql = new StringBuilder("""
+                SELECT o.uuid AS order_id, o.order_type, o.customer_details_id, o.customer_address_id,
+                       o.total_amount, o.currency, o.order_created,
+                       i.id AS item_id, i.product_id, i.quantity, i.status, i.price_per_unit
+                FROM orders o
+                JOIN order_items i ON i.order_id = o.uuid AND i.order_created = o.order_created
+                WHERE TRUE""");
+        List<Object> params = new ArrayList<>();
+        if (orderType != null) {
+            sql.append(" AND o.order_type = ?");
+            params.add(orderType.name());
+        }
+        // The bounds are repeated on the items, so their partitions outside the range are skipped as well
+        if (from != null) {
+            sql.append(" AND o.order_created >= ? AND i.order_created >= ?");
+            params.add(from);
+            params.add(from);
+        }
+        if (to != null) {
+            sql.append(" AND o.order_created < ? AND i.order_created < ?");
+            params.add(to);
+            params.add(to);
+        }
+
+        RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(output) : new NdjsonRowWriter(output);
+
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < params.size(); i++) {
+                statement.setObject(i + 1, params.get(i));
+            }
+            return statement;
+        }, (RowCallbackHandler) rowWriter::write));
+
+        rowWriter.finish();
+        log.info("Exported {} order items as {}", rowWriter.rows, format);
+        return rowWriter.rows;
+    }
+
+    private abstract static class RowWriter {
+        protected long rows;
+
+        abstract void write(ResultSet rs) throws SQLException;
+
+        abstract void finish() throws IOException;
+    }
+
+    private static final class CsvRowWriter extends RowWriter {
+        private final Writer writer;
+
+        private CsvRowWriter(OutputStream output) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            writer.write(String.join(",", COLUMNS));
+            writer.write('\n');
+        }
+
+        @Override
+        void write(ResultSet rs) throws SQLException {
+            try {
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    Object value = COLUMNS[i].equals("order_created")
+                            ? rs.getObject(COLUMNS[i], LocalDateTime.class)
+                            : rs.getObject(COLUMNS[i]);
+                    if (value instanceof String text) {
+                        writer.write('"');
+                        writer.write(text.replace("\"", "\"\""));
+                        writer.write('"');
+                    } else if (value != null) {
+                        writer.write(value.toString());
+                    }
+                }
+                writer.write('\n');
+                rows++;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Client stopped reading the export", e);
+            }
+        }
+
+        @Override
+        void finish() throws IOException {
+            writer.flush();
+        }
+    }
+
+    private final class NdjsonRowWriter extends RowWriter {
+        private final JsonGenerator generator;
+
+        private NdjsonRowWriter(OutputStream output) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(output);
+            // Otherwise a space is written between root values, at the start of every line after the first
+            generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+        }
+
+        @Override
+        void write(ResultSet rs) throws SQLException {
+            try {
+                generator.writeStartObject();
+                generator.writeNumberField("orderId", rs.getLong("order_id"));
+                generator.writeStringField("orderType", rs.getString("order_type"));
+                generator.writeNumberField("customerDetailsId", rs.getLong("customer_details_id"));
+                generator.writeNumberField("customerAddressId", rs.getLong("customer_address_id"));
+                generator.writeNumberField("totalAmount", rs.getBigDecimal("total_amount"));
+                generator.writeStringField("currency", rs.getString("currency"));
+                generator.writeStringField("orderCreated",
+                        rs.getObject("order_created", LocalDateTime.class).toString());
+                generator.writeNumberField("itemId", rs.getLong("item_id"));
+                generator.writeStringField("productId", rs.getString("product_id"));
+                generator.writeNumberField("quantity", rs.getInt("quantity"));
+                generator.writeStringField("status", rs.getString("status"));
+                generator.writeNumberField("pricePerUnit", rs.getBigDecimal("price_per_unit"));
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                rows++;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Client stopped reading the export", e);
+            }
+        }
+
+        @Override
+        void finish() throws IOException {
+            generator.flush();
+        }
+    }
+}
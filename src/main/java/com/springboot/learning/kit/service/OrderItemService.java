@@ -7,6 +7,7 @@ import com.springboot.learning.kit.transformer.OrderTransformer;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Service
@@ -16,11 +17,17 @@ public class OrderItemService {
     private final OrderTransformer orderTransformer;
     private final OrderItemRepository orderItemRepository;
 
-    public void saveOrderItems(List<OrderItemRequest> orderItem, long orderUUID) {
-        List<OrderItem> orderItemEntities = orderTransformer.transformOrderItemRequestToDomain(orderItem, orderUUID);
-        for (OrderItem orderItemEntity : orderItemEntities) {
-            orderItemRepository.save(orderItemEntity);
-        }
+    /**
+     * Persists all items of an order in one go, so Hibernate can send them as a single JDBC batch on flush.
+     *
+     * @param orderItem    the order items to save
+     * @param orderUUID    the UUID of the order the items belong to
+     * @param orderCreated the creation time of the order
+     */
+    public void saveOrderItems(List<OrderItemRequest> orderItem, long orderUUID, LocalDateTime orderCreated) {
+        List<OrderItem> orderItemEntities = orderTransformer.transformOrderItemRequestToDomain(orderItem, orderUUID,
+                orderCreated);
+        orderItemRepository.saveAll(orderItemEntities);
     }
 
 }
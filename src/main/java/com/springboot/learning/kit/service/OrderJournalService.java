@@ -0,0 +1,311 @@
+package com.springboot.learning.kit.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import com.springboot.learning.kit.exception.OrderProcessingException;
+import com.springboot.learning.kit.exception.RetryableFailures;
+import com.springboot.learning.kit.journal.SegmentedJournal;
+import com.springboot.learning.kit.journal.SegmentedJournal.Entry;
+import com.springboot.learning.kit.processor.AbstractOrderProcessor;
+import com.springboot.learning.kit.processor.OrderProcessors;
+import com.springboot.learning.kit.repository.OrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accept-fast mode for peak sales events. Orders are appended to a local {@link SegmentedJournal} and acknowledged
+ * straight away; a background flusher drains the journal into Postgres in large batches. Ingest latency then
+ * depends on the local disk rather than on the database, and a slow or unavailable database only makes the
+ * journal grow until it catches up.
+ * <p>
+ * Orders are saved through their {@link AbstractOrderProcessor}, like any other order. Until the flusher has
+ * saved an order it stays in the {@link InFlightOrderRegistry}, so copies of it are turned away as duplicates and
+ * a cancellation that arrives in the meantime is applied once it's saved. An order that can't be saved is skipped
+ * and the stock reserved for it is handed back.
+ * <p>
+ * The journal is replayed from its last checkpoint when the application starts, so orders accepted but not yet
+ * flushed when it stopped are saved then. An order may be written again if the application stopped between
+ * saving a batch and checkpointing it; the copy fails on the primary key and is taken as already saved.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderJournalService {
+
+    @Value("${order.journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${order.journal.directory:./data/journal}")
+    private String directory;
+
+    @Value("${order.journal.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    @Value("${order.journal.fsync:interval}")
+    private String fsync;
+
+    @Value("${order.journal.fsync-interval-ms:100}")
+    private long fsyncIntervalMillis;
+
+    @Value("${order.journal.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    @Value("${order.journal.flush-idle-ms:50}")
+    private long flushIdleMillis;
+
+    @Value("${order.journal.retry-backoff-ms:1000}")
+    private long retryBackoffMillis;
+
+    private final ObjectMapper objectMapper;
+    private final OrderPersistenceService orderPersistenceService;
+    private final OrderProcessors orderProcessors;
+    private final OrderRepository orderRepository;
+    private final InFlightOrderRegistry inFlightOrderRegistry;
+    private final OrderDeduplicationService orderDeduplicationService;
+    private final InventoryReservationService inventoryReservationService;
+    private final OrderCancellationService orderCancellationService;
+    private final MeterRegistry meterRegistry;
+
+    private SegmentedJournal journal;
+    private ScheduledExecutorService syncer;
+    private Thread flusher;
+    private Timer flushTimer;
+    private Counter skippedOrders;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        SegmentedJournal.FsyncPolicy fsyncPolicy = SegmentedJournal.FsyncPolicy.valueOf(fsync.toUpperCase(Locale.ROOT));
+        journal = new SegmentedJournal(Path.of(directory), segmentSizeMb * 1024 * 1024, fsyncPolicy);
+        log.info("Opened order journal in {} with {} orders waiting to be flushed", directory, journal.getLag());
+        registerReplayedOrders();
+
+        flushTimer = Timer.builder("orders.journal.flush")
+                .description("Time taken to save a batch of journaled orders")
+                .register(meterRegistry);
+        skippedOrders = meterRegistry.counter("orders.journal.skipped");
+        Gauge.builder("orders.journal.lag", journal, SegmentedJournal::getLag)
+                .description("Orders accepted into the journal but not yet saved to the database")
+                .register(meterRegistry);
+
+        if (fsyncPolicy == SegmentedJournal.FsyncPolicy.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "order-journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(journal::sync, fsyncIntervalMillis, fsyncIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * The flusher waits until the application is up, so the replay of orders left in the journal doesn't start
+     * before the database is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void startFlusher() {
+        if (!enabled) {
+            return;
+        }
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "order-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    void close() throws IOException, InterruptedException {
+        if (!enabled) {
+            return;
+        }
+
+        // Anything not yet flushed stays in the journal and is replayed on the next start
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        journal.close();
+    }
+
+    /**
+     * @return true if orders should be accepted into the journal instead of being saved directly
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Appends the order to the journal. Once this returns the order will be saved, even across a restart.
+     *
+     * @param orderRequest the order to accept
+     * @throws OrderProcessingException if the order could not be written to the journal
+     */
+    public void append(OrderRequest orderRequest) {
+        try {
+            journal.append(objectMapper.writeValueAsBytes(orderRequest));
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            throw new OrderProcessingException("Failed to journal order: " + orderRequest.getUUID(), e);
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                List<Entry> entries = journal.poll(flushBatchSize);
+                if (entries.isEmpty()) {
+                    TimeUnit.MILLISECONDS.sleep(flushIdleMillis);
+                } else if (!flush(entries)) {
+                    TimeUnit.MILLISECONDS.sleep(retryBackoffMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Order journal flusher failed, retrying", e);
+                journal.rewind();
+            }
+        }
+    }
+
+    /**
+     * Puts the orders left in the journal back in flight, as they were before the restart, so they are dealt with
+     * like any other order waiting to be flushed.
+     */
+    private void registerReplayedOrders() {
+        List<Entry> entries;
+        while (!(entries = journal.poll(flushBatchSize)).isEmpty()) {
+            for (Entry entry : entries) {
+                try {
+                    long orderUUID = objectMapper.readValue(entry.payload(), OrderRequest.class).getUUID();
+                    inFlightOrderRegistry.register(orderUUID);
+                    inFlightOrderRegistry.beginPersist(orderUUID);
+                } catch (IOException | RuntimeException e) {
+                    // Reported when the flusher gets to it
+                }
+            }
+        }
+        journal.rewind();
+    }
+
+    /**
+     * Saves a batch of journaled orders in one transaction. If that fails, the orders are saved one at a time so
+     * that one bad order doesn't hold up the rest; orders that can never be saved are skipped.
+     *
+     * @return false if the database couldn't be reached and the batch should be retried later
+     */
+    private boolean flush(List<Entry> entries) throws IOException {
+        List<OrderRequest> orders = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            orders.add(readOrder(entry));
+        }
+        List<OrderRequest> readable = orders.stream().filter(Objects::nonNull).toList();
+
+        try {
+            flushTimer.record(() -> {
+                readable.forEach(this::prepareOrder);
+                orderPersistenceService.persistOrders(readable);
+            });
+            journal.commit(entries.get(entries.size() - 1));
+            readable.forEach(this::placed);
+            return true;
+        } catch (Exception e) {
+            if (RetryableFailures.isRetryable(e)) {
+                log.warn("Database unavailable, will retry {} journaled orders: {}", entries.size(), e.getMessage());
+                journal.rewind();
+                return false;
+            }
+            log.warn("Failed to save batch of {} journaled orders, saving them one at a time", entries.size(), e);
+        }
+
+        // Each order is committed as soon as it's dealt with, so a retry never saves or skips it a second time
+        for (int i = 0; i < entries.size(); i++) {
+            OrderRequest order = orders.get(i);
+            if (order != null) {
+                try {
+                    prepareOrder(order);
+                    orderPersistenceService.persistOrder(order);
+                    placed(order);
+                } catch (Exception e) {
+                    if (RetryableFailures.isRetryable(e)) {
+                        journal.rewind();
+                        return false;
+                    }
+                    if (orderRepository.existsByKey(order.getUUID())) {
+                        // Saved before the last restart but not checkpointed
+                        placed(order);
+                    } else {
+                        skip(order, e);
+                    }
+                }
+            }
+            journal.commit(entries.get(i));
+        }
+        return true;
+    }
+
+    private void prepareOrder(OrderRequest order) {
+        orderProcessors.forOrder(order).prepareOrder(order);
+    }
+
+    /**
+     * Finishes off a saved order the way the placement pipeline does for orders saved directly.
+     */
+    private void placed(OrderRequest order) {
+        orderDeduplicationService.recordPlaced(order.getUUID());
+        if (inFlightOrderRegistry.complete(order.getUUID())) {
+            orderCancellationService.cancelSavedOrder(order.getUUID());
+        }
+    }
+
+    private void skip(OrderRequest order, Exception e) {
+        skippedOrders.increment();
+        log.error("Skipping journaled order {} that could not be saved", order.getUUID(), e);
+        inventoryReservationService.releaseOrder(order);
+        inFlightOrderRegistry.complete(order.getUUID());
+    }
+
+    /**
+     * @return the order, or null if the entry can't be read back, in which case it is skipped
+     */
+    private OrderRequest readOrder(Entry entry) {
+        try {
+            return objectMapper.readValue(entry.payload(), OrderRequest.class);
+        } catch (IOException e) {
+            skippedOrders.increment();
+            log.error("Skipping unreadable order journal entry {}", entry.sequence(), e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.springboot.learning.kit.service;
+
+import com.springboot.learning.kit.domain.OrderType;
+import com.springboot.learning.kit.dto.projection.OrderSummaryRow;
+import com.springboot.learning.kit.dto.response.OrderPageResponse;
+import com.springboot.learning.kit.dto.response.OrderSummaryResponse;
+import com.springboot.learning.kit.exception.OrderValidationException;
+import com.springboot.learning.kit.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class OrderListingService {
+
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    @Value("${order.listing.max-page-size:1000}")
+    private int maxPageSize;
+
+    private final OrderRepository orderRepository;
+
+    /**
+     * Lists orders of a type created within a time range, one page at a time.
+     *
+     * @param orderType the order type to list
+     * @param after     the cursor returned with the previous page, or null for the first page
+     * @param from      the earliest creation time to include, or null for no lower bound
+     * @param to        the creation time to stop before, or null for no upper bound
+     * @param limit     the page size
+     * @return the page, with a cursor for the next one unless it's the last
+     * @throws OrderValidationException if the cursor or page size is invalid
+     */
+    public OrderPageResponse listOrders(OrderType orderType, String after, LocalDateTime from, LocalDateTime to,
+                                        int limit) {
+        if (limit < 1 || limit > maxPageSize) {
+            throw new OrderValidationException("Page size must be between 1 and " + maxPageSize);
+        }
+
+        LocalDateTime lowerBound = from != null ? from : EARLIEST;
+        LocalDateTime upperBound = to != null ? to : LATEST;
+
+        // The first page seeks from just before the lower bound, the finest step order_created can take, so every
+        // order at the lower bound itself is included whatever its UUID
+        LocalDateTime afterCreated = lowerBound.minusNanos(1_000);
+        long afterUUID = Long.MIN_VALUE;
+        if (after != null) {
+            Cursor cursor = Cursor.decode(after);
+            afterCreated = cursor.orderCreated();
+            afterUUID = cursor.orderUUID();
+        }
+
+        List<OrderSummaryRow> rows = orderRepository.findPageByType(orderType.name(), lowerBound, upperBound,
+                afterCreated, afterUUID, limit);
+
+        List<OrderSummaryResponse> orders = rows.stream()
+                .map(row -> OrderSummaryResponse.builder()
+                        .orderId(row.getUuid())
+                        .orderType(row.getOrderType())
+                        .totalAmount(row.getTotalAmount())
+                        .currency(row.getCurrency())
+                        .orderCreated(row.getOrderCreated())
+                        .build())
+                .toList();
+
+        // A full page means there may be more, a short page is the last one
+        String next = null;
+        if (rows.size() == limit) {
+            OrderSummaryRow last = rows.get(rows.size() - 1);
+            next = new Cursor(last.getOrderCreated(), last.getUuid()).encode();
+        }
+
+        return OrderPageResponse.builder()
+                .orders(orders)
+                .next(next)
+                .build();
+    }
+
+    /**
+     * Position of the last order on a page, handed to the client as an opaque token.
+     */
+    private record Cursor(LocalDateTime orderCreated, long orderUUID) {
+
+        String encode() {
+            String raw = orderCreated + "|" + orderUUID;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.parseLong(raw.substring(separator + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new OrderValidationException("Invalid page cursor: " + token);
+            }
+        }
+    }
+}
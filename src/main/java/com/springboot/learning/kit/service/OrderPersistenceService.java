@@ -0,0 +1,59 @@
+package com.springboot.learning.kit.service;
+
+import com.springboot.learning.kit.domain.Order;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Owns the write path for new orders. Keeping it in its own bean means the call from the order processors
+ * goes through the Spring proxy, so the whole order is written in a single transaction and Hibernate can
+ * flush customer, address, order and order items as JDBC batches on commit.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderPersistenceService {
+
+    private final OrderService orderService;
+    private final CustomerService customerService;
+    private final AddressService addressService;
+    private final OrderItemService orderItemService;
+
+    /**
+     * Saves the order along with its customer, address and items.
+     *
+     * @param orderRequest the order request object
+     */
+    @Transactional
+    public void persistOrder(OrderRequest orderRequest) {
+        writeOrder(orderRequest);
+    }
+
+    /**
+     * Saves a batch of orders in a single transaction. Hibernate orders the inserts by table on flush, so the
+     * whole batch goes down as one multi-row INSERT per table rather than one set of statements per order.
+     *
+     * @param orderRequests the orders to save
+     */
+    @Transactional
+    public void persistOrders(List<OrderRequest> orderRequests) {
+        orderRequests.forEach(this::writeOrder);
+    }
+
+    private void writeOrder(OrderRequest orderRequest) {
+        // Save customer details and address
+        long customerId = customerService.saveCustomerDetails(orderRequest.getCustomerDetails());
+        long addressId = addressService.saveCustomerAddress(orderRequest.getCustomerAddress());
+
+        // now save order as we've got customer and address IDs
+        Order order = orderService.saveNewOrder(orderRequest, customerId, addressId);
+
+        // now we can save order items, in the same partition as the order
+        orderItemService.saveOrderItems(orderRequest.getOrderItems(), orderRequest.getUUID(), order.getOrderCreated());
+    }
+}
@@ -1,31 +1,209 @@
 package com.springboot.learning.kit.service;
 
-import com.springboot.learning.kit.domain.OrderType;
 import com.springboot.learning.kit.dto.request.OrderRequest;
+import com.springboot.learning.kit.exception.RetryableFailures;
 import com.springboot.learning.kit.processor.AbstractOrderProcessor;
+import com.springboot.learning.kit.processor.OrderProcessors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class OrderProcessingService {
 
-    private final Set<AbstractOrderProcessor> orderProcessors;
+    private final OrderProcessors orderProcessors;
     private final OrderValidationService orderValidationService;
+    private final OrderDeduplicationService orderDeduplicationService;
+    private final InventoryReservationService inventoryReservationService;
+    private final OrderJournalService orderJournalService;
+    private final InFlightOrderRegistry inFlightOrderRegistry;
+    private final OrderCancellationService orderCancellationService;
+    private final OrderBatchingService orderBatchingService;
 
     public void processNewOrder(OrderRequest orderRequest) {
 
         // Perform validation on the incoming order request
         orderValidationService.validateOrder(orderRequest);
 
-        orderProcessors.stream()
-                .filter(processor -> processor.supports(OrderType.valueOf(orderRequest.getOrderType())))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("No processor found for order type: " + orderRequest.getOrderType()))
-                .processOrder(orderRequest);
+        // Redelivered or retried orders are acknowledged without doing anything, rather than failing on the
+        // primary key after the customer and address have been written
+        if (orderDeduplicationService.isDuplicate(orderRequest.getUUID())) {
+            log.info("Ignoring duplicate order: {}", orderRequest.getUUID());
+            return;
+        }
+
+        AbstractOrderProcessor orderProcessor = orderProcessors.forOrder(orderRequest);
+
+        // A copy of an order still on its way in, or still waiting in the journal, is a duplicate too
+        if (!inFlightOrderRegistry.register(orderRequest.getUUID())) {
+            log.info("Ignoring duplicate of in-flight order: {}", orderRequest.getUUID());
+            return;
+        }
+
+        // Stock is taken before the order is saved, and handed back if saving fails
+        Map<Long, Integer> reservation = Collections.emptyMap();
+        boolean saved = false;
+        boolean journaled = false;
+        try {
+            reservation = inventoryReservationService.reserve(orderRequest);
+
+            // A cancellation that arrived while the order was on its way here means it's never saved at all
+            if (!inFlightOrderRegistry.beginPersist(orderRequest.getUUID())) {
+                log.info("Dropping order {} cancelled before it was saved", orderRequest.getUUID());
+                inventoryReservationService.release(reservation);
+                return;
+            }
+
+            if (orderJournalService.isEnabled()) {
+                // Accept-fast mode: the order is saved later by the journal flusher, which also takes it out of
+                // the registry, records it as placed and applies a cancellation that arrives in the meantime
+                orderJournalService.append(orderRequest);
+                journaled = true;
+                return;
+            }
+            orderProcessor.processOrder(orderRequest);
+            saved = true;
+        } catch (RuntimeException e) {
+            inventoryReservationService.release(reservation);
+            throw e;
+        } finally {
+            if (!journaled && inFlightOrderRegistry.complete(orderRequest.getUUID()) && saved) {
+                orderCancellationService.cancelSavedOrder(orderRequest.getUUID());
+            }
+        }
+
+        orderDeduplicationService.recordPlaced(orderRequest.getUUID());
+    }
+
+    /**
+     * Processes orders that arrived together, saving every one that passes validation and stock reservation in a
+     * single transaction. If that transaction fails the orders are saved one at a time, so only the ones that
+     * can't be saved fail; if it failed because the database is unavailable, every order fails with that.
+     * <p>
+     * Every order goes through its processor's {@link AbstractOrderProcessor#prepareOrder(OrderRequest)} before
+     * the batch is saved, or before it's saved from the journal in journal mode. A second copy of an order in the same batch is skipped as a duplicate of the first.
+     *
+     * @param orderRequests the orders to process
+     * @return the failure of each order, in the same order, or null for orders that were placed or skipped
+     */
+    public List<RuntimeException> processNewOrders(List<OrderRequest> orderRequests) {
+        List<RuntimeException> failures = new ArrayList<>(Collections.nCopies(orderRequests.size(), null));
+        Map<Integer, Map<Long, Integer>> reservations = new LinkedHashMap<>();
+
+        for (int i = 0; i < orderRequests.size(); i++) {
+            OrderRequest orderRequest = orderRequests.get(i);
+            try {
+                Map<Long, Integer> reservation = prepare(orderRequest);
+                if (reservation != null) {
+                    reservations.put(i, reservation);
+                }
+            } catch (RuntimeException e) {
+                failures.set(i, e);
+            }
+        }
+        if (reservations.isEmpty()) {
+            return failures;
+        }
+
+        List<OrderRequest> accepted = reservations.keySet().stream().map(orderRequests::get).toList();
+        boolean saved = false;
+        RuntimeException unavailable = null;
+        if (!orderJournalService.isEnabled()) {
+            try {
+                orderBatchingService.saveOrders(accepted);
+                saved = true;
+            } catch (RuntimeException e) {
+                if (RetryableFailures.isRetryable(e)) {
+                    // Saving one at a time would only fail the same way
+                    unavailable = e;
+                } else {
+                    log.warn("Failed to save batch of {} orders, saving them one at a time ~ {}", accepted.size(),
+                            e.getMessage());
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, Map<Long, Integer>> entry : reservations.entrySet()) {
+            OrderRequest orderRequest = orderRequests.get(entry.getKey());
+            boolean placed = saved;
+            boolean journaled = false;
+            try {
+                if (unavailable != null) {
+                    throw unavailable;
+                }
+                if (!placed) {
+                    if (orderJournalService.isEnabled()) {
+                        // Left in flight until the journal flusher has saved it, as in processNewOrder()
+                        orderJournalService.append(orderRequest);
+                        journaled = true;
+                    } else {
+                        orderBatchingService.saveOrder(orderRequest);
+                    }
+                    placed = true;
+                }
+            } catch (RuntimeException e) {
+                inventoryReservationService.release(entry.getValue());
+                failures.set(entry.getKey(), e);
+            } finally {
+                if (!journaled && inFlightOrderRegistry.complete(orderRequest.getUUID()) && placed) {
+                    orderCancellationService.cancelSavedOrder(orderRequest.getUUID());
+                }
+            }
+            if (placed && !journaled) {
+                orderDeduplicationService.recordPlaced(orderRequest.getUUID());
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Runs the checks and processing of {@link #processNewOrder(OrderRequest)} short of saving the order, and
+     * reserves its stock.
+     *
+     * @return the stock reserved for the order, or null if the order is a duplicate or was cancelled and must
+     * not be saved
+     */
+    private Map<Long, Integer> prepare(OrderRequest orderRequest) {
+        orderValidationService.validateOrder(orderRequest);
+        if (orderDeduplicationService.isDuplicate(orderRequest.getUUID())) {
+            log.info("Ignoring duplicate order: {}", orderRequest.getUUID());
+            return null;
+        }
+        AbstractOrderProcessor orderProcessor = orderProcessors.forOrder(orderRequest);
+
+        if (!inFlightOrderRegistry.register(orderRequest.getUUID())) {
+            log.info("Ignoring duplicate of in-flight order: {}", orderRequest.getUUID());
+            return null;
+        }
+        try {
+            Map<Long, Integer> reservation = inventoryReservationService.reserve(orderRequest);
+            if (!inFlightOrderRegistry.beginPersist(orderRequest.getUUID())) {
+                log.info("Dropping order {} cancelled before it was saved", orderRequest.getUUID());
+                inventoryReservationService.release(reservation);
+                inFlightOrderRegistry.complete(orderRequest.getUUID());
+                return null;
+            }
+            try {
+                // In journal mode the flusher runs the processor when it saves the order
+                if (!orderJournalService.isEnabled()) {
+                    orderProcessor.prepareOrder(orderRequest);
+                }
+            } catch (RuntimeException e) {
+                inventoryReservationService.release(reservation);
+                throw e;
+            }
+            return reservation;
+        } catch (RuntimeException e) {
+            inFlightOrderRegistry.complete(orderRequest.getUUID());
+            throw e;
+        }
     }
 }
@@ -16,11 +16,16 @@ public class OrderService {
     private final OrderTransformer orderTransformer;
     private final OrderRepository orderRepository;
 
-    public void saveNewOrder(OrderRequest orderRequest, long customerId, long addressId) {
+    /**
+     * Saves a new order.
+     *
+     * @return the saved order
+     */
+    public Order saveNewOrder(OrderRequest orderRequest, long customerId, long addressId) {
         log.info("Saving new order: {}", orderRequest);
 
         Order order = orderTransformer.transformOrderRequestToDomain(orderRequest, customerId, addressId);
 
-        orderRepository.save(order);
+        return orderRepository.save(order);
     }
 }
@@ -1,13 +1,152 @@
 package com.springboot.learning.kit.service;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.springboot.learning.kit.domain.ItemStatus;
+import com.springboot.learning.kit.dto.projection.OrderStatusRow;
+import com.springboot.learning.kit.dto.request.OrderStatusUpdateRequest;
+import com.springboot.learning.kit.dto.response.OrderItemStatusResponse;
+import com.springboot.learning.kit.dto.response.OrderStatusResponse;
+import com.springboot.learning.kit.repository.OrderItemStatusRepository;
+import com.springboot.learning.kit.repository.OrderItemStatusRepository.CancelledItem;
+import com.springboot.learning.kit.repository.OrderItemStatusRepository.ItemKey;
+import com.springboot.learning.kit.repository.OrderStatusRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
 @Service
 @RequiredArgsConstructor
 public class OrderStatusService {
 
-    public void saveOrderStatus() {
+    @Value("${order.status.cache.max-size:50000}")
+    private long cacheMaxSize;
+
+    @Value("${order.status.cache.ttl-seconds:30}")
+    private long cacheTtlSeconds;
+
+    private final OrderStatusRepository orderStatusRepository;
+    private final OrderItemStatusRepository orderItemStatusRepository;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Read-through cache of order statuses. Caffeine runs at most one load per key at a time, so a burst of polls
+     * for the same order shares a single query. Orders that aren't found aren't cached, as they may be placed
+     * any moment.
+     */
+    private LoadingCache<Long, OrderStatusResponse> orderStatuses;
+
+    @PostConstruct
+    void initCache() {
+        orderStatuses = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats()
+                .build(this::loadOrderStatus);
+        CaffeineCacheMetrics.monitor(meterRegistry, orderStatuses, "order-status");
+    }
+
+    /**
+     * Looks up the order along with the status of each of its items.
+     *
+     * @param orderUUID the UUID of the order
+     * @return the order status, or empty if there is no such order
+     */
+    public Optional<OrderStatusResponse> getOrderStatus(long orderUUID) {
+        return Optional.ofNullable(orderStatuses.get(orderUUID));
+    }
+
+    /**
+     * Drops the cached status of an order. Must be called whenever the status of one of its items changes.
+     *
+     * @param orderUUID the UUID of the order
+     */
+    public void evictOrderStatus(long orderUUID) {
+        orderStatuses.invalidate(orderUUID);
+    }
+
+    /**
+     * Applies a batch of item status changes in one transaction. Changes that aren't allowed from the item's
+     * current status, or that name an item that doesn't exist, are skipped. The cache isn't touched, callers must
+     * evict the orders that changed once the transaction has committed.
+     *
+     * @param updates the changes, in the order they were received
+     * @return the items whose status changed
+     */
+    @Transactional
+    public List<ItemKey> saveOrderStatuses(List<OrderStatusUpdateRequest> updates) {
+        // An item may change more than once in a batch, say SHIPPED and then DELIVERED. Each round holds at most
+        // one change per item, so the changes to an item are applied in the order they were received
+        List<List<OrderStatusUpdateRequest>> rounds = new ArrayList<>();
+        Map<ItemKey, Integer> changesPerItem = new HashMap<>();
+        for (OrderStatusUpdateRequest update : updates) {
+            int round = changesPerItem.merge(toItemKey(update), 1, Integer::sum) - 1;
+            if (round == rounds.size()) {
+                rounds.add(new ArrayList<>());
+            }
+            rounds.get(round).add(update);
+        }
+
+        List<ItemKey> updated = new ArrayList<>();
+        for (List<OrderStatusUpdateRequest> round : rounds) {
+            Map<ItemStatus, List<ItemKey>> byStatus = new EnumMap<>(ItemStatus.class);
+            for (OrderStatusUpdateRequest update : round) {
+                byStatus.computeIfAbsent(ItemStatus.fromString(update.getStatus()), status -> new ArrayList<>())
+                        .add(toItemKey(update));
+            }
+            byStatus.forEach((status, items) -> updated.addAll(orderItemStatusRepository.updateStatus(status, items)));
+        }
+        return updated;
+    }
+
+    /**
+     * Cancels every item of the given orders that hasn't shipped yet, in one transaction. As with
+     * {@link #saveOrderStatuses(List)}, callers must evict the cancelled orders once it has committed.
+     *
+     * @param orderIds the orders to cancel
+     * @return the items that were cancelled, with their quantities
+     */
+    @Transactional
+    public List<CancelledItem> cancelOrders(Collection<Long> orderIds) {
+        return orderItemStatusRepository.cancelOrders(orderIds);
+    }
+
+    private static ItemKey toItemKey(OrderStatusUpdateRequest update) {
+        return new ItemKey(update.getOrderId(), String.valueOf(update.getProductId()));
+    }
+
+    private OrderStatusResponse loadOrderStatus(Long orderUUID) {
+        List<OrderStatusRow> rows = orderStatusRepository.findOrderStatus(orderUUID);
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        List<OrderItemStatusResponse> items = rows.stream()
+                .filter(row -> row.getProductId() != null)
+                .map(row -> OrderItemStatusResponse.builder()
+                        .productId(row.getProductId())
+                        .quantity(row.getQuantity())
+                        .status(row.getStatus())
+                        .build())
+                .toList();
 
+        return OrderStatusResponse.builder()
+                .orderId(rows.get(0).getOrderId())
+                .orderType(rows.get(0).getOrderType())
+                .items(items)
+                .build();
     }
 }
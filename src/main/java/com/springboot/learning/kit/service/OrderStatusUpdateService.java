@@ -0,0 +1,127 @@
+package com.springboot.learning.kit.service;
+
+import com.springboot.learning.kit.batch.MicroBatcher;
+import com.springboot.learning.kit.domain.ItemStatus;
+import com.springboot.learning.kit.dto.request.OrderStatusUpdateRequest;
+import com.springboot.learning.kit.exception.OrderProcessingException;
+import com.springboot.learning.kit.exception.OrderValidationException;
+import com.springboot.learning.kit.repository.OrderItemStatusRepository.ItemKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Applies item status changes from the carrier feeds. Changes from all status queue consumers are grouped into
+ * batches and written with a handful of set-based UPDATEs per batch, so a burst of events costs a few statements
+ * and one commit rather than a load and save per item.
+ * <p>
+ * Changes the {@link ItemStatus} state machine doesn't allow from the item's current status are dropped and
+ * counted; these are mostly carrier events arriving late or twice.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderStatusUpdateService {
+
+    @Value("${order.status.updates.max-batch-size:500}")
+    private int maxBatchSize;
+
+    @Value("${order.status.updates.max-wait-ms:20}")
+    private long maxWaitMillis;
+
+    @Value("${order.status.updates.workers:1}")
+    private int workers;
+
+    @Value("${order.status.updates.queue-capacity:20000}")
+    private int queueCapacity;
+
+    private final OrderStatusService orderStatusService;
+    private final MeterRegistry meterRegistry;
+
+    private MicroBatcher<OrderStatusUpdateRequest> batcher;
+    private DistributionSummary batchSizes;
+    private Counter appliedUpdates;
+    private Counter rejectedUpdates;
+
+    @PostConstruct
+    void start() {
+        batchSizes = DistributionSummary.builder("order.status.updates.batch.size")
+                .description("Number of item status changes written per transaction")
+                .register(meterRegistry);
+        appliedUpdates = meterRegistry.counter("order.status.updates", "result", "applied");
+        rejectedUpdates = meterRegistry.counter("order.status.updates", "result", "rejected");
+
+        batcher = new MicroBatcher<>("order-status", maxBatchSize, Duration.ofMillis(maxWaitMillis), queueCapacity,
+                this::applyBatch);
+        Gauge.builder("order.status.updates.queue.size", batcher, MicroBatcher::getQueueSize)
+                .description("Item status changes waiting to be batched")
+                .register(meterRegistry);
+        batcher.start(workers);
+    }
+
+    @PreDestroy
+    void stop() {
+        batcher.stop();
+    }
+
+    /**
+     * Applies the status change as part of the next batch, and waits until that batch has been committed.
+     *
+     * @param update the status change
+     * @throws OrderValidationException if the change is malformed
+     * @throws OrderProcessingException if the batch could not be written
+     */
+    public void updateStatus(OrderStatusUpdateRequest update) {
+        validate(update);
+
+        try {
+            batcher.submit(update).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OrderProcessingException("Interrupted while updating status of order: " + update.getOrderId(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new OrderProcessingException("Failed to update status of order: " + update.getOrderId(), e);
+        }
+    }
+
+    private void applyBatch(List<OrderStatusUpdateRequest> updates) {
+        batchSizes.record(updates.size());
+        List<ItemKey> updated = orderStatusService.saveOrderStatuses(updates);
+
+        // Evicted only once committed, so a concurrent read can't cache the old status again
+        updated.stream().map(ItemKey::orderId).distinct().forEach(orderStatusService::evictOrderStatus);
+
+        appliedUpdates.increment(updated.size());
+        int rejected = updates.size() - updated.size();
+        if (rejected > 0) {
+            rejectedUpdates.increment(rejected);
+            log.debug("Skipped {} of {} item status changes not allowed from the item's current status",
+                    rejected, updates.size());
+        }
+    }
+
+    private static void validate(OrderStatusUpdateRequest update) {
+        if (update.getOrderId() == null || update.getProductId() == null) {
+            throw new OrderValidationException("Order id and product id are required");
+        }
+        try {
+            ItemStatus.fromString(update.getStatus());
+        } catch (IllegalArgumentException e) {
+            throw new OrderValidationException(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.springboot.learning.kit.transformer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes and reads order messages on the queues. Orders can be sent as JSON, or in one of the binary encodings
+ * CBOR or Smile, which are smaller and quicker to parse for orders with many items. The encoding is named by the
+ * message's content type, and anything without a binary content type is read as JSON, so producers that only
+ * send JSON keep working. Bodies of compression-threshold-bytes or more can also be gzipped, which is named by
+ * the message's content encoding. A gzipped body is only inflated up to max-inflated-bytes, so a small message
+ * can't expand into one that exhausts the heap.
+ * <p>
+ * The binary encodings use copies of the application's mapper, so they read and write orders the same way JSON
+ * does.
+ */
+@Component
+public class OrderMessageCodec {
+
+    public static final String JSON = "application/json";
+    public static final String CBOR = "application/cbor";
+    public static final String SMILE = "application/x-jackson-smile";
+    public static final String GZIP = "gzip";
+
+    private final String contentType;
+    private final boolean compression;
+    private final int compressionThreshold;
+    private final long maxInflatedBytes;
+
+    private final ObjectReader jsonReader;
+    private final ObjectReader cborReader;
+    private final ObjectReader smileReader;
+    private final ObjectWriter writer;
+
+    public OrderMessageCodec(ObjectMapper objectMapper,
+                             @Qualifier("orderRequestReader") ObjectReader orderRequestReader,
+                             @Value("${order.messages.format:json}") String format,
+                             @Value("${order.messages.compression.enabled:false}") boolean compression,
+                             @Value("${order.messages.compression.threshold-bytes:4096}") int compressionThreshold,
+                             @Value("${order.messages.compression.max-inflated-bytes:4194304}") long maxInflatedBytes) {
+        this.compression = compression;
+        this.compressionThreshold = compressionThreshold;
+        this.maxInflatedBytes = maxInflatedBytes;
+
+        ObjectMapper cborMapper = objectMapper.copyWith(new CBORFactory());
+        ObjectMapper smileMapper = objectMapper.copyWith(new SmileFactory());
+        this.jsonReader = orderRequestReader;
+        this.cborReader = cborMapper.readerFor(OrderRequest.class);
+        this.smileReader = smileMapper.readerFor(OrderRequest.class);
+
+        switch (format.toLowerCase(Locale.ROOT)) {
+            case "json" -> {
+                this.contentType = JSON;
+                this.writer = objectMapper.writerFor(OrderRequest.class);
+            }
+            case "cbor" -> {
+                this.contentType = CBOR;
+                this.writer = cborMapper.writerFor(OrderRequest.class);
+            }
+            case "smile" -> {
+                this.contentType = SMILE;
+                this.writer = smileMapper.writerFor(OrderRequest.class);
+            }
+            default -> throw new IllegalArgumentException("Unsupported order message format: " + format);
+        }
+    }
+
+    /**
+     * Writes the order in the configured encoding, gzipped if compression is enabled and it's large enough.
+     *
+     * @param orderRequest the order
+     * @return the message body, with the content type and content encoding to send it with
+     * @throws IOException if the order could not be written
+     */
+    public EncodedOrder encode(OrderRequest orderRequest) throws IOException {
+        byte[] body = writer.writeValueAsBytes(orderRequest);
+        if (!compression || body.length < compressionThreshold) {
+            return new EncodedOrder(body, contentType, null);
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        return new EncodedOrder(compressed.toByteArray(), contentType, GZIP);
+    }
+
+    /**
+     * Reads an order from a message body.
+     *
+     * @param body            the message body
+     * @param contentType     the message's content type, or null; read as JSON unless it names a binary encoding
+     * @param contentEncoding the message's content encoding, or null if the body isn't compressed
+     * @return the order
+     * @throws IOException if the body is not a valid order in its encoding, or inflates past max-inflated-bytes
+     */
+    public OrderRequest decode(byte[] body, String contentType, String contentEncoding) throws IOException {
+        ObjectReader reader = readerFor(contentType);
+        if (contentEncoding == null || contentEncoding.isEmpty() || contentEncoding.equalsIgnoreCase("identity")) {
+            return reader.readValue(body);
+        }
+        if (!contentEncoding.equalsIgnoreCase(GZIP)) {
+            throw new IOException("Unsupported content encoding: " + contentEncoding);
+        }
+        try (InputStream in = new BoundedInputStream(new GZIPInputStream(new ByteArrayInputStream(body)),
+                maxInflatedBytes)) {
+            return reader.readValue(in);
+        }
+    }
+
+    private ObjectReader readerFor(String contentType) {
+        if (contentType == null) {
+            return jsonReader;
+        }
+        // Ignores parameters such as charset
+        String mediaType = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        return switch (mediaType) {
+            case CBOR -> cborReader;
+            case SMILE -> smileReader;
+            default -> jsonReader;
+        };
+    }
+
+    /**
+     * Fails the read once more than the limit has been read, rather than silently truncating the body.
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long read;
+
+        private BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long n) throws IOException {
+            read += n;
+            if (read > limit) {
+                throw new IOException("Compressed order message inflates past " + limit + " bytes");
+            }
+        }
+    }
+
+    /**
+     * An order ready to be sent.
+     *
+     * @param body            the message body
+     * @param contentType     the content type to send it with
+     * @param contentEncoding the content encoding to send it with, or null if the body isn't compressed
+     */
+    public record EncodedOrder(byte[] body, String contentType, String contentEncoding) {
+    }
+}
@@ -9,6 +9,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.List;
 
 @Component
@@ -29,7 +30,7 @@ public class OrderTransformer {
                 .customerAddressId(addressId)
                 .totalAmount(request.getOrderAmount())
                 .currency(request.getCurrency())
-                .orderCreated(LocalDateTime.now())
+                .orderCreated(LocalDateTime.now(ZoneOffset.UTC))
                 .build();
     }
 
@@ -44,6 +45,7 @@ public class OrderTransformer {
                 .name(detailsRequest.getName())
                 .email(detailsRequest.getEmail())
                 .phone(detailsRequest.getPhone())
+                .customerKey(CustomerDetails.keyOf(detailsRequest.getEmail(), detailsRequest.getPhone()))
                 .build();
     }
 
@@ -60,19 +62,25 @@ public class OrderTransformer {
                 .state(addressRequest.getState())
                 .zipCode(addressRequest.getZipCode())
                 .country(addressRequest.getCountry())
+                .fingerprint(CustomerAddress.fingerprintOf(addressRequest.getStreet(), addressRequest.getCity(),
+                        addressRequest.getState(), addressRequest.getZipCode(), addressRequest.getCountry()))
                 .build();
     }
 
     /**
      * Converts a list of OrderItemRequest to a list of OrderItem domain objects.
      *
-     * @param request the list of OrderItemRequest to convert
+     * @param request      the list of OrderItemRequest to convert
+     * @param orderUUID    the UUID of the order the items belong to
+     * @param orderCreated the creation time of the order, which decides the partition the items go in
      * @return the list of OrderItem domain objects
      */
-    public List<OrderItem> transformOrderItemRequestToDomain(List<OrderItemRequest> request, long orderUUID) {
+    public List<OrderItem> transformOrderItemRequestToDomain(List<OrderItemRequest> request, long orderUUID,
+                                                             LocalDateTime orderCreated) {
         return request.stream()
                 .map(itemRequest -> OrderItem.builder()
                         .orderId(orderUUID)
+                        .orderCreated(orderCreated)
                         .productId(itemRequest.getProductId())
                         .quantity(itemRequest.getQuantity())
                         .status(ItemStatus.PROCESSING.name())
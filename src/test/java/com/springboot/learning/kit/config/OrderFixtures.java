@@ -0,0 +1,69 @@
+package com.springboot.learning.kit.config;
+
+import com.springboot.learning.kit.dto.request.CustomerAddressRequest;
+import com.springboot.learning.kit.dto.request.CustomerDetailsRequest;
+import com.springboot.learning.kit.dto.request.OrderItemRequest;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Order requests shared by the unit and integration tests. Every order comes from the same customer and address,
+ * with items spread over the products 1001 to 1005.
+ */
+public final class OrderFixtures {
+
+    private static final long FIXED_UUID = 123456789L;
+
+    private OrderFixtures() {
+    }
+
+    /**
+     * @param items the number of order items
+     * @return an online order with the given number of items, the same on every call
+     */
+    public static OrderRequest order(int items) {
+        return order(FIXED_UUID, "ONLINE", items);
+    }
+
+    /**
+     * @param orderType the order type
+     * @param items     the number of order items
+     * @return an order with a new random UUID, to be placed for real
+     */
+    public static OrderRequest newOrder(String orderType, int items) {
+        return order(ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE), orderType, items);
+    }
+
+    private static OrderRequest order(long uuid, String orderType, int items) {
+        CustomerDetailsRequest customer = new CustomerDetailsRequest();
+        customer.setName("Jane Doe");
+        customer.setEmail("jane.doe@example.com");
+        customer.setPhone("+441234567891");
+
+        CustomerAddressRequest address = new CustomerAddressRequest();
+        address.setStreet("10 Downing Street");
+        address.setCity("London");
+        address.setState("Greater London");
+        address.setZipCode("SW1A 2AA");
+        address.setCountry("UK");
+
+        OrderRequest order = new OrderRequest();
+        order.setUUID(uuid);
+        order.setOrderType(orderType);
+        order.setCustomerDetails(customer);
+        order.setCustomerAddress(address);
+        order.setOrderItems(IntStream.range(0, items).mapToObj(i -> {
+            OrderItemRequest item = new OrderItemRequest();
+            item.setProductId(1001L + (i % 5));
+            item.setQuantity(1);
+            item.setPricePerUnit(BigDecimal.TEN);
+            return item;
+        }).toList());
+        order.setOrderAmount(BigDecimal.TEN.multiply(BigDecimal.valueOf(items)));
+        order.setCurrency("GBP");
+        return order;
+    }
+}
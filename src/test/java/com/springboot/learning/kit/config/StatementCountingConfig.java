@@ -0,0 +1,133 @@
+package com.springboot.learning.kit.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the statements sent to the database at the JDBC level, so everything is seen whether it comes from
+ * Hibernate or a JdbcTemplate. A JDBC batch counts as one statement, as it goes down in one round trip.
+ * <p>
+ * Only statements run on the thread that called {@link StatementCounter#start()} are counted, so the background
+ * jobs writing to the database at the same time don't show up.
+ */
+@TestConfiguration
+public class StatementCountingConfig {
+
+    @Bean
+    public StatementCounter statementCounter() {
+        return new StatementCounter();
+    }
+
+    @Bean
+    public static BeanPostProcessor statementCountingDataSourcePostProcessor(StatementCounter statementCounter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && beanName.equals("dataSource")) {
+                    return new CountingDataSource(dataSource, statementCounter);
+                }
+                return bean;
+            }
+        };
+    }
+
+    public static class StatementCounter {
+
+        private final AtomicLong count = new AtomicLong();
+        private volatile Thread countedThread;
+
+        /**
+         * Resets the count and starts counting the statements run on the current thread.
+         */
+        public void start() {
+            count.set(0);
+            countedThread = Thread.currentThread();
+        }
+
+        /**
+         * @return the statements run on the counted thread since {@link #start()}
+         */
+        public long count() {
+            return count.get();
+        }
+
+        private void executed() {
+            if (Thread.currentThread() == countedThread) {
+                count.incrementAndGet();
+            }
+        }
+    }
+
+    private static class CountingDataSource extends DelegatingDataSource {
+
+        private final StatementCounter counter;
+
+        private CountingDataSource(DataSource target, StatementCounter counter) {
+            super(target);
+            this.counter = counter;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return countingConnection(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return countingConnection(super.getConnection(username, password));
+        }
+
+        private Connection countingConnection(Connection connection) {
+            return proxy(Connection.class, connection, (method, result) -> {
+                if (result instanceof CallableStatement statement) {
+                    return countingStatement(CallableStatement.class, statement);
+                }
+                if (result instanceof PreparedStatement statement) {
+                    return countingStatement(PreparedStatement.class, statement);
+                }
+                if (result instanceof Statement statement) {
+                    return countingStatement(Statement.class, statement);
+                }
+                return result;
+            });
+        }
+
+        private <T extends Statement> T countingStatement(Class<T> type, T statement) {
+            return proxy(type, statement, (method, result) -> {
+                if (method.getName().startsWith("execute")) {
+                    counter.executed();
+                }
+                return result;
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, T target, ResultHandler handler) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                try {
+                    return handler.handle(method, method.invoke(target, args));
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResultHandler {
+        Object handle(Method method, Object result);
+    }
+}
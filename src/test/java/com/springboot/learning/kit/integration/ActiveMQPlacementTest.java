@@ -0,0 +1,142 @@
+package com.springboot.learning.kit.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.learning.kit.config.BaseIntegrationTest;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import com.springboot.learning.kit.exception.OrderValidationException;
+import com.springboot.learning.kit.routes.ActiveMQRoutes;
+import com.springboot.learning.kit.service.OrderAggregationService;
+import com.springboot.learning.kit.service.OrderProcessingService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.Message;
+import jakarta.jms.TextMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BooleanSupplier;
+
+import static com.springboot.learning.kit.config.OrderFixtures.newOrder;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ActiveMQPlacementTest extends BaseIntegrationTest {
+
+    @Autowired
+    private OrderProcessingService orderProcessingService;
+
+    @Autowired
+    private JmsTemplate jmsTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${amq.order.placement.queue}")
+    private String placementQueue;
+
+    @Value("${amq.order.placement.queue.dlq}")
+    private String placementQueueDlq;
+
+    @Test
+    void stagedPipelineShouldPlaceOrders() throws Exception {
+        List<OrderRequest> orders = List.of(newOrder("ONLINE", 2), newOrder("OFFLINE", 1), newOrder("ONLINE", 3));
+        for (OrderRequest order : orders) {
+            String body = objectMapper.writeValueAsString(order);
+            jmsTemplate.send(placementQueue, session -> session.createTextMessage(body));
+        }
+
+        for (OrderRequest order : orders) {
+            await(() -> isPlaced(order), "order " + order.getUUID() + " to be placed");
+        }
+        assertEquals(6, jdbcTemplate.queryForObject("SELECT count(*) FROM order_items WHERE order_id IN (?, ?, ?)",
+                Integer.class, orders.get(0).getUUID(), orders.get(1).getUUID(), orders.get(2).getUUID()));
+    }
+
+    @Test
+    void stagedPipelineShouldDeadLetterUnreadableOrdersWithTheReason() throws Exception {
+        String body = "{\"UUID\": " + System.nanoTime() + ", \"orderType\": ";
+        jmsTemplate.send(placementQueue, session -> session.createTextMessage(body));
+
+        await(() -> deadLettered(body) != null, "the unreadable order to be dead lettered");
+        String reason = deadLettered(body).getStringProperty(ActiveMQRoutes.DLQ_REASON_HEADER);
+        assertNotNull(reason);
+        assertTrue(reason.startsWith("Invalid order received"), reason);
+    }
+
+    @Test
+    void aggregationShouldSaveAGroupTogetherAndFailOnlyTheInvalidOrder() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OrderAggregationService aggregationService = new OrderAggregationService(orderProcessingService,
+                meterRegistry);
+        ReflectionTestUtils.setField(aggregationService, "enabled", true);
+        ReflectionTestUtils.setField(aggregationService, "completionSize", 3);
+        // Long enough that the group only closes once all three orders are in
+        ReflectionTestUtils.setField(aggregationService, "completionTimeoutMillis", 10_000L);
+        ReflectionTestUtils.setField(aggregationService, "workers", 1);
+        ReflectionTestUtils.invokeMethod(aggregationService, "start");
+
+        OrderRequest invalid = newOrder("ONLINE", 1);
+        invalid.setOrderType("BOGUS");
+        List<OrderRequest> orders = List.of(newOrder("ONLINE", 1), invalid, newOrder("OFFLINE", 2));
+        try {
+            List<CompletableFuture<Void>> placed = orders.stream()
+                    .map(order -> CompletableFuture.runAsync(() -> aggregationService.placeOrder(order)))
+                    .toList();
+
+            placed.get(0).get();
+            placed.get(2).get();
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> placed.get(1).get());
+            assertInstanceOf(OrderValidationException.class, failure.getCause());
+        } finally {
+            ReflectionTestUtils.invokeMethod(aggregationService, "stop");
+        }
+
+        assertTrue(isPlaced(orders.get(0)));
+        assertFalse(isPlaced(invalid));
+        assertTrue(isPlaced(orders.get(2)));
+        DistributionSummary groupSizes = meterRegistry.get("orders.aggregation.group.size").summary();
+        assertEquals(1, groupSizes.count());
+        assertEquals(3, groupSizes.max());
+    }
+
+    private Message deadLettered(String body) {
+        return jmsTemplate.browse(placementQueueDlq, (session, browser) -> Collections.list(browser.getEnumeration())
+                .stream()
+                .map(Message.class::cast)
+                .filter(message -> message instanceof TextMessage text && Objects.equals(text(text), body))
+                .findFirst()
+                .orElse(null));
+    }
+
+    private static String text(TextMessage message) {
+        try {
+            return message.getText();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private boolean isPlaced(OrderRequest order) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM order_keys WHERE uuid = ?)", Boolean.class, order.getUUID()));
+    }
+
+    private static void await(BooleanSupplier condition, String description) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for " + description);
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.springboot.learning.kit.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.learning.kit.config.BaseIntegrationTest;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import com.springboot.learning.kit.dto.response.BulkOrderSummaryResponse;
+import com.springboot.learning.kit.service.BulkOrderIngestService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static com.springboot.learning.kit.config.OrderFixtures.newOrder;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkOrderIngestTest extends BaseIntegrationTest {
+
+    @Autowired
+    private BulkOrderIngestService bulkOrderIngestService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void delimitersQuotesAndNewlinesShouldSurviveTheCopy() throws IOException {
+        OrderRequest order = newOrder("ONLINE", 2);
+        order.getCustomerDetails().setName("O'Brien, \"Jack\"\\ Jr");
+        order.getCustomerDetails().setEmail("bulk." + order.getUUID() + "@example.com");
+        order.getCustomerAddress().setStreet("Flat 2,\n\"The Old Mill\"\r\n1 Mill Lane");
+        order.getCustomerAddress().setCity("Stoke-on-Trent, \\N");
+
+        BulkOrderSummaryResponse summary = ingest(List.of(order));
+
+        assertEquals(1, summary.getCreated());
+        assertEquals(0, summary.getFailed());
+        Map<String, Object> saved = jdbcTemplate.queryForMap("""
+                SELECT c.name, a.street, a.city, (SELECT count(*) FROM order_items i WHERE i.order_id = o.uuid) AS items
+                FROM orders o
+                JOIN customer_details c ON c.id = o.customer_details_id
+                JOIN customer_address a ON a.id = o.customer_address_id
+                WHERE o.uuid = ?""", order.getUUID());
+        assertEquals(order.getCustomerDetails().getName(), saved.get("name"));
+        assertEquals(order.getCustomerAddress().getStreet(), saved.get("street"));
+        assertEquals(order.getCustomerAddress().getCity(), saved.get("city"));
+        assertEquals(2L, ((Number) saved.get("items")).longValue());
+    }
+
+    @Test
+    void failedChunkShouldFailEveryLineAndLeaveTheConnectionUsable() throws IOException {
+        OrderRequest first = newOrder("ONLINE", 1);
+        OrderRequest tooLong = newOrder("ONLINE", 1);
+        // Gets past validation but not the currency column, so the COPY fails part way through the chunk
+        tooLong.setCurrency("POUND");
+        OrderRequest last = newOrder("OFFLINE", 1);
+
+        BulkOrderSummaryResponse failed = ingest(List.of(first, tooLong, last));
+
+        assertEquals(3, failed.getLinesRead());
+        assertEquals(3, failed.getFailed());
+        assertEquals(0, failed.getCreated());
+        for (OrderRequest order : List.of(first, tooLong, last)) {
+            assertFalse(isPlaced(order));
+        }
+
+        // The same orders go through once the bad one is fixed, on connections the failed COPY went back to
+        tooLong.setCurrency("GBP");
+        BulkOrderSummaryResponse retried = ingest(List.of(first, tooLong, last));
+
+        assertEquals(3, retried.getCreated());
+        for (OrderRequest order : List.of(first, tooLong, last)) {
+            assertTrue(isPlaced(order));
+        }
+    }
+
+    private BulkOrderSummaryResponse ingest(List<OrderRequest> orders) throws IOException {
+        StringBuilder upload = new StringBuilder();
+        for (OrderRequest order : orders) {
+            upload.append(objectMapper.writeValueAsString(order)).append('\n');
+        }
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        BulkOrderSummaryResponse summary = bulkOrderIngestService.ingest(
+                new ByteArrayInputStream(upload.toString().getBytes(StandardCharsets.UTF_8)), report);
+
+        // A result per line, then the summary
+        assertEquals(orders.size() + 1, report.toString(StandardCharsets.UTF_8).lines().count());
+        return summary;
+    }
+
+    private boolean isPlaced(OrderRequest order) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM order_keys WHERE uuid = ?)", Boolean.class, order.getUUID()));
+    }
+}
@@ -0,0 +1,162 @@
+package com.springboot.learning.kit.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.learning.kit.config.BaseIntegrationTest;
+import com.springboot.learning.kit.consumer.NewOrderConsumer;
+import com.springboot.learning.kit.dto.request.DlqReplayRequest;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import com.springboot.learning.kit.dto.response.DlqReplayStatusResponse;
+import com.springboot.learning.kit.routes.ActiveMQRoutes;
+import com.springboot.learning.kit.routes.RabbitMQRoutes;
+import com.springboot.learning.kit.service.DlqReplayService;
+import jakarta.jms.TextMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jms.core.JmsTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+import static com.springboot.learning.kit.config.OrderFixtures.newOrder;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DlqReplayTest extends BaseIntegrationTest {
+
+    private static final String TIMEOUT = "Query timeout while saving order";
+    private static final String INVALID = "Invalid order received ~ unexpected end of input";
+
+    @Autowired
+    private DlqReplayService dlqReplayService;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private AmqpAdmin amqpAdmin;
+
+    @Autowired
+    private JmsTemplate jmsTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${rmq.order.placement.queue.dlq}")
+    private String rabbitPlacementQueueDlq;
+
+    @Value("${amq.order.placement.queue.dlq}")
+    private String activeMQPlacementQueueDlq;
+
+    @Test
+    void rabbitMQReplayShouldOnlyMoveMatchingMessages() throws Exception {
+        amqpAdmin.purgeQueue(rabbitPlacementQueueDlq, false);
+        List<OrderRequest> orders = seed((order, reason) -> rabbitTemplate.send(RabbitMQRoutes.EXCHANGE,
+                rabbitPlacementQueueDlq, MessageBuilder.withBody(objectMapper.writeValueAsBytes(order))
+                        .setContentType(MessageProperties.CONTENT_TYPE_JSON)
+                        .setHeader(NewOrderConsumer.EXCEPTION_MESSAGE_HEADER, reason)
+                        .build()));
+
+        assertReplayed("rabbitmq", orders, () -> Objects.requireNonNull(
+                amqpAdmin.getQueueInfo(rabbitPlacementQueueDlq)).getMessageCount());
+    }
+
+    @Test
+    void activeMQReplayShouldOnlyMoveMatchingMessages() throws Exception {
+        JmsTemplate receiver = new JmsTemplate(Objects.requireNonNull(jmsTemplate.getConnectionFactory()));
+        receiver.setReceiveTimeout(500);
+        while (receiver.receive(activeMQPlacementQueueDlq) != null) {
+            // Drains whatever earlier tests left in the dead letter queue
+        }
+        List<OrderRequest> orders = seed((order, reason) -> {
+            String body = objectMapper.writeValueAsString(order);
+            jmsTemplate.send(activeMQPlacementQueueDlq, session -> {
+                TextMessage message = session.createTextMessage(body);
+                message.setStringProperty(ActiveMQRoutes.DLQ_REASON_HEADER, reason);
+                return message;
+            });
+        });
+
+        assertReplayed("activemq", orders, () -> jmsTemplate.browse(activeMQPlacementQueueDlq,
+                (session, browser) -> Collections.list(browser.getEnumeration()).size()));
+    }
+
+    /**
+     * Dead letters an online and an offline order for each of two reasons.
+     *
+     * @return the orders, with the online order that timed out first
+     */
+    private List<OrderRequest> seed(DeadLetterSender sender) throws Exception {
+        List<OrderRequest> orders = List.of(newOrder("ONLINE", 1), newOrder("ONLINE", 1), newOrder("OFFLINE", 1),
+                newOrder("OFFLINE", 1));
+        sender.send(orders.get(0), TIMEOUT);
+        sender.send(orders.get(1), INVALID);
+        sender.send(orders.get(2), TIMEOUT);
+        sender.send(orders.get(3), INVALID);
+        return orders;
+    }
+
+    private void assertReplayed(String broker, List<OrderRequest> orders, LongSupplier deadLetterCount)
+            throws InterruptedException {
+        await(() -> deadLetterCount.getAsLong() == 4, "the dead letter queue to be seeded");
+
+        DlqReplayStatusResponse dryRun = replay(broker, "online", null, true);
+        assertEquals(4, dryRun.getRead());
+        assertEquals(2, dryRun.getMatched());
+        assertEquals(0, dryRun.getReplayed());
+        await(() -> deadLetterCount.getAsLong() == 4, "the dry run to leave every message in place");
+
+        DlqReplayStatusResponse replay = replay(broker, "ONLINE", "timeout", false);
+        assertEquals(4, replay.getRead());
+        assertEquals(1, replay.getMatched());
+        assertEquals(1, replay.getReplayed());
+        assertEquals(3, replay.getSkipped());
+        await(() -> deadLetterCount.getAsLong() == 3, "the replayed message to leave the dead letter queue");
+        await(() -> isPlaced(orders.get(0)), "the replayed order to be placed");
+        assertFalse(isPlaced(orders.get(1)));
+    }
+
+    private DlqReplayStatusResponse replay(String broker, String orderType, String errorReason, boolean dryRun)
+            throws InterruptedException {
+        DlqReplayRequest request = new DlqReplayRequest();
+        request.setBroker(broker);
+        request.setOrderType(orderType);
+        request.setErrorReason(errorReason);
+        request.setDryRun(dryRun);
+        request.setRatePerSecond(100);
+
+        dlqReplayService.startReplay(request);
+        await(() -> dlqReplayService.getStatus().getFinishedAt() != null, "the replay to finish");
+        DlqReplayStatusResponse status = dlqReplayService.getStatus();
+        assertEquals("COMPLETED", status.getState(), status.getError());
+        return status;
+    }
+
+    private boolean isPlaced(OrderRequest order) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM order_keys WHERE uuid = ?)", Boolean.class, order.getUUID()));
+    }
+
+    private static void await(BooleanSupplier condition, String description) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for " + description);
+            Thread.sleep(100);
+        }
+    }
+
+    @FunctionalInterface
+    private interface DeadLetterSender {
+        void send(OrderRequest order, String reason) throws Exception;
+    }
+}
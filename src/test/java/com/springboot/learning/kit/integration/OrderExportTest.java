@@ -0,0 +1,79 @@
+package com.springboot.learning.kit.integration;
+
+import com.springboot.learning.kit.config.BaseIntegrationTest;
+import com.springboot.learning.kit.domain.OrderType;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import com.springboot.learning.kit.service.OrderExportService;
+import com.springboot.learning.kit.service.OrderProcessingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static com.springboot.learning.kit.config.OrderFixtures.newOrder;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderExportTest extends BaseIntegrationTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2002, 3, 4, 5, 6, 7, 123_456_000);
+
+    @Autowired
+    private OrderExportService orderExportService;
+
+    @Autowired
+    private OrderProcessingService orderProcessingService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void ndjsonExportShouldWriteOneBareObjectPerLine() throws IOException {
+        OrderRequest placed = newOrder("ONLINE", 1);
+        orderProcessingService.processNewOrder(placed);
+        Map<String, Object> source = jdbcTemplate.queryForMap("""
+                SELECT o.customer_details_id, o.customer_address_id, i.status
+                FROM orders o
+                JOIN order_items i ON i.order_id = o.uuid AND i.order_created = o.order_created
+                WHERE o.uuid = ?""", placed.getUUID());
+        // Two rows, so the bytes between root values are covered; their order isn't defined, so each is one line
+        copy(placed, 8_000_001L, 9_000_001L);
+        copy(placed, 8_000_002L, 9_000_002L);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long rows = orderExportService.export(OrderExportService.Format.NDJSON, OrderType.ONLINE, CREATED,
+                CREATED.plusSeconds(1), output);
+
+        assertEquals(2, rows);
+        String expected = """
+                {"orderId":%d,"orderType":"ONLINE","customerDetailsId":%d,"customerAddressId":%d,\
+                "totalAmount":10.0000,"currency":"GBP","orderCreated":"2002-03-04T05:06:07.123456",\
+                "itemId":%d,"productId":"1001","quantity":1,"status":"%s","pricePerUnit":10.0000}
+                """;
+        String first = expected.formatted(8_000_001L, source.get("customer_details_id"),
+                source.get("customer_address_id"), 9_000_001L, source.get("status"));
+        String second = expected.formatted(8_000_002L, source.get("customer_details_id"),
+                source.get("customer_address_id"), 9_000_002L, source.get("status"));
+        String exported = output.toString(StandardCharsets.UTF_8);
+        assertTrue(List.of(first + second, second + first).contains(exported), exported);
+    }
+
+    private void copy(OrderRequest order, long uuid, long itemId) {
+        jdbcTemplate.update("""
+                INSERT INTO orders (uuid, customer_details_id, customer_address_id, order_type, total_amount,
+                                    currency, order_created)
+                SELECT ?, customer_details_id, customer_address_id, order_type, total_amount, currency, ?
+                FROM orders
+                WHERE uuid = ?""", uuid, CREATED, order.getUUID());
+        jdbcTemplate.update("""
+                INSERT INTO order_items (id, order_id, order_created, product_id, quantity, status, price_per_unit)
+                SELECT ?, ?, ?, product_id, quantity, status, price_per_unit
+                FROM order_items
+                WHERE order_id = ?""", itemId, uuid, CREATED, order.getUUID());
+    }
+}
@@ -0,0 +1,86 @@
+package com.springboot.learning.kit.integration;
+
+import com.springboot.learning.kit.config.BaseIntegrationTest;
+import com.springboot.learning.kit.domain.OrderType;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import com.springboot.learning.kit.dto.response.OrderPageResponse;
+import com.springboot.learning.kit.dto.response.OrderSummaryResponse;
+import com.springboot.learning.kit.exception.OrderValidationException;
+import com.springboot.learning.kit.service.OrderListingService;
+import com.springboot.learning.kit.service.OrderProcessingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.springboot.learning.kit.config.OrderFixtures.newOrder;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderListingTest extends BaseIntegrationTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2001, 2, 3, 4, 5, 6);
+
+    @Autowired
+    private OrderListingService orderListingService;
+
+    @Autowired
+    private OrderProcessingService orderProcessingService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void cursorShouldWalkEveryOrderOnceInCreationThenUUIDOrder() {
+        OrderRequest placed = newOrder("OFFLINE", 1);
+        orderProcessingService.processNewOrder(placed);
+        // Orders sharing the lower bound instant, including the lowest possible UUID, are told apart by UUID
+        List<Long> expected = List.of(Long.MIN_VALUE, -5L, 0L, 7L, 9L);
+        for (long uuid : List.of(9L, 0L, Long.MIN_VALUE, 7L, -5L)) {
+            copy(placed, uuid, CREATED);
+        }
+        copy(placed, 11L, CREATED.plusSeconds(1));
+        // Just outside the range on either side
+        copy(placed, 12L, CREATED.minusNanos(1_000));
+        copy(placed, 13L, CREATED.plusDays(1));
+
+        List<Long> listed = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String after = null;
+        do {
+            OrderPageResponse page = orderListingService.listOrders(OrderType.OFFLINE, after, CREATED,
+                    CREATED.plusDays(1), 2);
+            page.getOrders().stream().map(OrderSummaryResponse::getOrderId).forEach(listed::add);
+            pageSizes.add(page.getOrders().size());
+            after = page.getNext();
+        } while (after != null);
+
+        List<Long> all = new ArrayList<>(expected);
+        all.add(11L);
+        assertEquals(all, listed);
+        assertEquals(List.of(2, 2, 2, 0), pageSizes);
+    }
+
+    @Test
+    void invalidCursorShouldBeRejected() {
+        assertThrows(OrderValidationException.class,
+                () -> orderListingService.listOrders(OrderType.ONLINE, "not-a-cursor", null, null, 10));
+
+        HttpClientErrorException e = assertThrows(HttpClientErrorException.class, () -> restTemplate.getForEntity(
+                getBaseUrl() + "/order?type=ONLINE&after=not-a-cursor", String.class));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    }
+
+    private void copy(OrderRequest order, long uuid, LocalDateTime created) {
+        jdbcTemplate.update("""
+                INSERT INTO orders (uuid, customer_details_id, customer_address_id, order_type, total_amount,
+                                    currency, order_created)
+                SELECT ?, customer_details_id, customer_address_id, order_type, total_amount, currency, ?
+                FROM orders
+                WHERE uuid = ?""", uuid, created, order.getUUID());
+    }
+}
@@ -0,0 +1,131 @@
+package com.springboot.learning.kit.integration;
+
+import com.springboot.learning.kit.config.BaseIntegrationTest;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import com.springboot.learning.kit.service.OrderProcessingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.springboot.learning.kit.config.OrderFixtures.newOrder;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderPartitioningTest extends BaseIntegrationTest {
+
+    @Autowired
+    private OrderProcessingService orderProcessingService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void changesetsShouldLeaveOrdersPartitionedByMonth() {
+        List<String> applied = jdbcTemplate.queryForList(
+                "SELECT id FROM databasechangelog WHERE id LIKE 'partition_%' ORDER BY id", String.class);
+        assertEquals(List.of("partition_1", "partition_2", "partition_3", "partition_4"), applied);
+
+        assertEquals("r", partitionStrategy("orders"));
+        assertEquals("r", partitionStrategy("order_items"));
+
+        String thisMonth = partitionSuffix(YearMonth.now(ZoneOffset.UTC));
+        assertTrue(tableExists("orders_" + thisMonth));
+        assertTrue(tableExists("order_items_" + thisMonth));
+    }
+
+    @Test
+    void ensureOrderPartitionsShouldOnlyCreateMissingMonths() {
+        LocalDate month = LocalDate.of(2099, 1, 1);
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT ensure_order_partitions(?, ?)", Integer.class,
+                month, month.plusMonths(1)));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT ensure_order_partitions(?, ?)", Integer.class,
+                month, month.plusMonths(2)));
+
+        assertTrue(tableExists("orders_p2099_03"));
+        assertTrue(tableExists("order_items_p2099_03"));
+    }
+
+    @Test
+    void savedOrderShouldLandInItsMonthAndBeKeyedByUUID() {
+        OrderRequest order = newOrder("ONLINE", 1);
+        orderProcessingService.processNewOrder(order);
+
+        String partition = jdbcTemplate.queryForObject(
+                "SELECT tableoid::regclass::text FROM orders WHERE uuid = ?", String.class, order.getUUID());
+        assertEquals("orders_" + partitionSuffix(YearMonth.now(ZoneOffset.UTC)), partition);
+        assertEquals(1, jdbcTemplate.queryForObject("""
+                SELECT count(*)
+                FROM order_keys k
+                JOIN orders o ON o.uuid = k.uuid AND o.order_created = k.order_created
+                WHERE k.uuid = ?""", Integer.class, order.getUUID()));
+
+        // The same UUID in a different month gets past the partitioned primary key, but not order_keys
+        assertThrows(DuplicateKeyException.class, () -> jdbcTemplate.update("""
+                INSERT INTO orders (uuid, customer_details_id, customer_address_id, order_type, total_amount,
+                                    currency, order_created)
+                SELECT uuid, customer_details_id, customer_address_id, order_type, total_amount, currency,
+                       order_created + INTERVAL '1 month'
+                FROM orders
+                WHERE uuid = ?""", order.getUUID()));
+    }
+
+    @Test
+    void ensureOrderPartitionsShouldMoveTheMonthOutOfTheDefaultPartition() {
+        OrderRequest order = newOrder("ONLINE", 1);
+        orderProcessingService.processNewOrder(order);
+
+        // A copy of the order, and its item, in a month without partitions of its own
+        long uuid = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+        LocalDateTime created = LocalDateTime.of(2098, 5, 15, 12, 0);
+        jdbcTemplate.update("""
+                INSERT INTO orders (uuid, customer_details_id, customer_address_id, order_type, total_amount,
+                                    currency, order_created)
+                SELECT ?, customer_details_id, customer_address_id, order_type, total_amount, currency, ?
+                FROM orders
+                WHERE uuid = ?""", uuid, created, order.getUUID());
+        jdbcTemplate.update("""
+                INSERT INTO order_items (id, order_id, order_created, product_id, quantity, status, price_per_unit)
+                SELECT ?, ?, ?, product_id, quantity, status, price_per_unit
+                FROM order_items
+                WHERE order_id = ?""", uuid, uuid, created, order.getUUID());
+        assertEquals("orders_default", partitionOf("orders", uuid));
+        assertEquals("order_items_default", partitionOf("order_items", uuid));
+
+        LocalDate month = LocalDate.of(2098, 5, 1);
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT ensure_order_partitions(?, ?)", Integer.class,
+                month, month));
+
+        assertEquals("orders_p2098_05", partitionOf("orders", uuid));
+        assertEquals("order_items_p2098_05", partitionOf("order_items", uuid));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM order_keys WHERE uuid = ? AND order_created = ?", Integer.class, uuid, created));
+    }
+
+    private String partitionOf(String table, long uuid) {
+        String column = "orders".equals(table) ? "uuid" : "order_id";
+        return jdbcTemplate.queryForObject(
+                "SELECT DISTINCT tableoid::regclass::text FROM " + table + " WHERE " + column + " = ?", String.class,
+                uuid);
+    }
+
+    private String partitionStrategy(String table) {
+        return jdbcTemplate.queryForObject(
+                "SELECT partstrat::text FROM pg_partitioned_table WHERE partrelid = ?::regclass", String.class, table);
+    }
+
+    private boolean tableExists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class,
+                table));
+    }
+
+    private static String partitionSuffix(YearMonth month) {
+        return String.format("p%04d_%02d", month.getYear(), month.getMonthValue());
+    }
+}
@@ -0,0 +1,41 @@
+package com.springboot.learning.kit.integration;
+
+import com.springboot.learning.kit.config.BaseIntegrationTest;
+import com.springboot.learning.kit.config.StatementCountingConfig;
+import com.springboot.learning.kit.config.StatementCountingConfig.StatementCounter;
+import com.springboot.learning.kit.service.OrderProcessingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+import static com.springboot.learning.kit.config.OrderFixtures.newOrder;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Import(StatementCountingConfig.class)
+public class OrderWritePathTest extends BaseIntegrationTest {
+
+    @Autowired
+    private OrderProcessingService orderProcessingService;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @Test
+    void orderShouldBeWrittenInConstantNumberOfStatements() {
+        // Warm up the pooled id generators, the customer and address caches and the stock of every product, so
+        // the orders below come from a repeat customer and one-off lookups don't show up in the counts
+        orderProcessingService.processNewOrder(newOrder("ONLINE", 5));
+
+        statementCounter.start();
+        orderProcessingService.processNewOrder(newOrder("ONLINE", 1));
+        long singleItemStatements = statementCounter.count();
+
+        statementCounter.start();
+        orderProcessingService.processNewOrder(newOrder("ONLINE", 20));
+        long multiItemStatements = statementCounter.count();
+
+        // One INSERT for the order, plus a single batch for all the order items
+        assertEquals(2, singleItemStatements);
+        assertEquals(singleItemStatements, multiItemStatements);
+    }
+}
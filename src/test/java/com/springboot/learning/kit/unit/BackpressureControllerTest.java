@@ -0,0 +1,136 @@
+package com.springboot.learning.kit.unit;
+
+import com.springboot.learning.kit.consumer.BackpressureController;
+import com.springboot.learning.kit.pool.ConnectionPoolController;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.camel.CamelContext;
+import org.apache.camel.ServiceStatus;
+import org.apache.camel.spi.RouteController;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class BackpressureControllerTest {
+
+    private static final String STARTED_ROUTE = "orderPlacementRoute";
+    private static final String STOPPED_ROUTE = "orderStatusRoute";
+
+    private final RabbitListenerEndpointRegistry listenerRegistry = mock(RabbitListenerEndpointRegistry.class);
+    private final MessageListenerContainer runningContainer = mock(MessageListenerContainer.class);
+    private final MessageListenerContainer stoppedContainer = mock(MessageListenerContainer.class);
+    private final CamelContext camelContext = mock(CamelContext.class);
+    private final RouteController routeController = mock(RouteController.class);
+    private final ConnectionPoolController connectionPoolController = mock(ConnectionPoolController.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Timer commitTimes = meterRegistry.timer("orders.persist");
+    private final Timer acquireTimes = meterRegistry.timer("hikaricp.connections.acquire", "pool", "primary");
+    private final BackpressureController controller = controller();
+
+    @AfterEach
+    void stopController() {
+        ReflectionTestUtils.invokeMethod(controller, "stop");
+    }
+
+    @Test
+    void slowCommitsShouldPauseTheRunningConsumers() throws Exception {
+        commitTimes.record(Duration.ofMillis(800));
+
+        check();
+
+        assertTrue(controller.isPaused());
+        verify(runningContainer).stop();
+        verify(stoppedContainer, never()).stop();
+        verify(routeController).suspendRoute(STARTED_ROUTE);
+        verify(routeController, never()).suspendRoute(STOPPED_ROUTE);
+        assertEquals(1.0, meterRegistry.counter("backpressure.pauses").count());
+    }
+
+    @Test
+    void slowConnectionWaitShouldPause() {
+        acquireTimes.record(Duration.ofMillis(300));
+
+        check();
+
+        assertTrue(controller.isPaused());
+        verify(runningContainer).stop();
+    }
+
+    @Test
+    void consumersShouldResumeOnlyAfterEnoughHealthyChecksInARow() throws Exception {
+        when(connectionPoolController.isSaturated()).thenReturn(true);
+        check();
+        assertTrue(controller.isPaused());
+        when(connectionPoolController.isSaturated()).thenReturn(false);
+
+        // Nothing recorded counts as healthy, a commit between the thresholds starts the count again
+        check();
+        commitTimes.record(Duration.ofMillis(100));
+        check();
+        commitTimes.record(Duration.ofMillis(300));
+        check();
+        check();
+        commitTimes.record(Duration.ofMillis(100));
+        check();
+        assertTrue(controller.isPaused());
+        verify(runningContainer, never()).start();
+
+        check();
+
+        assertFalse(controller.isPaused());
+        verify(runningContainer).start();
+        verify(stoppedContainer, never()).start();
+        verify(routeController).resumeRoute(STARTED_ROUTE);
+        verify(routeController, never()).resumeRoute(STOPPED_ROUTE);
+    }
+
+    @Test
+    void saturatedPoolShouldKeepTheConsumersPaused() {
+        when(connectionPoolController.isSaturated()).thenReturn(true);
+
+        for (int i = 0; i < 5; i++) {
+            check();
+        }
+
+        assertTrue(controller.isPaused());
+        verify(runningContainer, times(1)).stop();
+        verify(runningContainer, never()).start();
+    }
+
+    /**
+     * A controller that pauses on commits over 500 ms or waits over 200 ms, and resumes after three checks under
+     * 150 ms and 20 ms, whose own scheduled checks are too far apart to run during a test.
+     */
+    private BackpressureController controller() {
+        when(runningContainer.isRunning()).thenReturn(true);
+        when(listenerRegistry.getListenerContainers()).thenReturn(List.of(runningContainer, stoppedContainer));
+        when(camelContext.getRouteController()).thenReturn(routeController);
+        when(routeController.getRouteStatus(STARTED_ROUTE)).thenReturn(ServiceStatus.Started);
+        when(routeController.getRouteStatus(STOPPED_ROUTE)).thenReturn(ServiceStatus.Stopped);
+
+        BackpressureController controller = new BackpressureController(listenerRegistry, camelContext,
+                connectionPoolController, meterRegistry);
+        ReflectionTestUtils.setField(controller, "checkIntervalMillis", 3_600_000L);
+        ReflectionTestUtils.setField(controller, "pauseCommitMillis", 500.0);
+        ReflectionTestUtils.setField(controller, "pauseWaitMillis", 200.0);
+        ReflectionTestUtils.setField(controller, "resumeCommitMillis", 150.0);
+        ReflectionTestUtils.setField(controller, "resumeWaitMillis", 20.0);
+        ReflectionTestUtils.setField(controller, "resumeChecks", 3);
+        ReflectionTestUtils.setField(controller, "minPauseMillis", 0L);
+        ReflectionTestUtils.setField(controller, "camelRoutes", List.of(STARTED_ROUTE, STOPPED_ROUTE));
+        ReflectionTestUtils.invokeMethod(controller, "start");
+        return controller;
+    }
+
+    private void check() {
+        ReflectionTestUtils.invokeMethod(controller, "check");
+    }
+}
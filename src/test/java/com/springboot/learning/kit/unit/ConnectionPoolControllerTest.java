@@ -0,0 +1,74 @@
+package com.springboot.learning.kit.unit;
+
+import com.springboot.learning.kit.exception.ServiceOverloadedException;
+import com.springboot.learning.kit.pool.ConnectionPoolController;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConnectionPoolControllerTest {
+
+    private static final int MAX_SIZE = 50;
+    private static final int MAX_WAITING = 50;
+
+    private final HikariDataSource dataSource = mock(HikariDataSource.class);
+    private final HikariPoolMXBean pool = mock(HikariPoolMXBean.class);
+
+    @Test
+    void shrunkPoolShouldReportSaturation() {
+        ConnectionPoolController controller = controller();
+        // Shrunk to the minimum because the database is slow, far below max-size
+        poolState(10, 10, MAX_WAITING);
+
+        assertTrue(controller.isSaturated());
+        assertThrows(ServiceOverloadedException.class, controller::checkCapacity);
+    }
+
+    @Test
+    void poolLeftAtItsInitialSizeShouldReportSaturation() {
+        ConnectionPoolController controller = controller();
+        // With adaptive sizing off the pool stays at its initial size, below max-size
+        poolState(20, 20, 80);
+
+        assertTrue(controller.isSaturated());
+        assertEquals(1.0, controller.getUtilization());
+    }
+
+    @Test
+    void poolShouldNotBeSaturatedWithFewWaitersOrFreeConnections() {
+        ConnectionPoolController controller = controller();
+
+        poolState(20, 20, MAX_WAITING - 1);
+        assertFalse(controller.isSaturated());
+
+        poolState(20, 15, MAX_WAITING);
+        assertFalse(controller.isSaturated());
+        assertDoesNotThrow(controller::checkCapacity);
+    }
+
+    /**
+     * A controller with its meters registered but no resizing thread, so the pool only changes size when a test
+     * says so.
+     */
+    private ConnectionPoolController controller() {
+        ConnectionPoolController controller = new ConnectionPoolController(dataSource, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(controller, "maxSize", MAX_SIZE);
+        ReflectionTestUtils.setField(controller, "maxWaitingThreads", MAX_WAITING);
+        ReflectionTestUtils.setField(controller, "adaptive", false);
+        ReflectionTestUtils.invokeMethod(controller, "start");
+        return controller;
+    }
+
+    private void poolState(int size, int active, int waiting) {
+        when(dataSource.getHikariPoolMXBean()).thenReturn(pool);
+        when(dataSource.getMaximumPoolSize()).thenReturn(size);
+        when(pool.getActiveConnections()).thenReturn(active);
+        when(pool.getThreadsAwaitingConnection()).thenReturn(waiting);
+    }
+}
@@ -0,0 +1,72 @@
+package com.springboot.learning.kit.unit;
+
+import com.springboot.learning.kit.service.DlqReplayService.RateLimiter;
+import com.springboot.learning.kit.service.DlqReplayService.ReplayFilter;
+import jakarta.jms.JMSException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DlqReplayServiceTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void filterWithoutCriteriaShouldMatchEverythingWithoutParsing() throws JMSException {
+        ReplayFilter filter = new ReplayFilter(null, null);
+
+        assertTrue(filter.matches(null, () -> fail("Order type read without an order type filter")));
+        assertTrue(filter.matches("Connection refused", () -> fail("Order type read without an order type filter")));
+    }
+
+    @Test
+    void reasonFilterShouldMatchPartOfTheReasonIgnoringCase() throws JMSException {
+        ReplayFilter filter = new ReplayFilter(null, "Connection REFUSED");
+
+        assertTrue(filter.matches("JDBC: connection refused by host", () -> "ONLINE"));
+        assertFalse(filter.matches("Invalid order received", () -> "ONLINE"));
+        assertFalse(filter.matches(null, () -> "ONLINE"));
+    }
+
+    @Test
+    void orderTypeFilterShouldOnlyParseMessagesWithAMatchingReason() throws JMSException {
+        ReplayFilter filter = new ReplayFilter("online", "timeout");
+
+        assertTrue(filter.matches("Query timeout", () -> "ONLINE"));
+        assertFalse(filter.matches("Query timeout", () -> "OFFLINE"));
+        assertFalse(filter.matches("Rejected", () -> fail("Order type read for a message with the wrong reason")));
+    }
+
+    @Test
+    void unreadableOrdersShouldOnlyMatchWithoutAnOrderTypeFilter() throws JMSException {
+        assertTrue(new ReplayFilter(null, null).matches("rejected", () -> null));
+        assertFalse(new ReplayFilter("ONLINE", null).matches("rejected", () -> null));
+    }
+
+    @Test
+    void permitsShouldBeSpacedEvenly() {
+        AtomicLong clock = new AtomicLong();
+        RateLimiter limiter = new RateLimiter(100, clock::get);
+
+        assertEquals(0, limiter.reserve());
+        assertEquals(10 * MILLIS, limiter.reserve());
+        assertEquals(20 * MILLIS, limiter.reserve());
+
+        clock.set(15 * MILLIS);
+        assertEquals(15 * MILLIS, limiter.reserve());
+    }
+
+    @Test
+    void idleTimeShouldNotBeMadeUpWithABurst() {
+        AtomicLong clock = new AtomicLong();
+        RateLimiter limiter = new RateLimiter(100, clock::get);
+        limiter.reserve();
+
+        clock.set(TimeUnit.SECONDS.toNanos(5));
+        assertEquals(0, limiter.reserve());
+        assertEquals(10 * MILLIS, limiter.reserve());
+    }
+}
@@ -0,0 +1,74 @@
+package com.springboot.learning.kit.unit;
+
+import com.springboot.learning.kit.service.InFlightOrderRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InFlightOrderRegistryTest {
+
+    private static final long ORDER = 42L;
+
+    @Test
+    void orderCancelledBeforeSavingShouldBeDropped() {
+        InFlightOrderRegistry registry = new InFlightOrderRegistry();
+        registry.register(ORDER);
+
+        assertTrue(registry.cancel(ORDER));
+        assertFalse(registry.beginPersist(ORDER));
+        assertFalse(registry.complete(ORDER));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void orderCancelledWhileSavingShouldBeCancelledAfterwards() {
+        InFlightOrderRegistry registry = new InFlightOrderRegistry();
+        registry.register(ORDER);
+
+        assertTrue(registry.beginPersist(ORDER));
+        assertTrue(registry.cancel(ORDER));
+        assertTrue(registry.complete(ORDER));
+    }
+
+    @Test
+    void orderNotInFlightShouldBeLeftToTheDatabase() {
+        InFlightOrderRegistry registry = new InFlightOrderRegistry();
+
+        assertFalse(registry.cancel(ORDER));
+        assertTrue(registry.beginPersist(ORDER));
+
+        registry.register(ORDER);
+        assertTrue(registry.beginPersist(ORDER));
+        assertFalse(registry.complete(ORDER));
+        assertFalse(registry.cancel(ORDER));
+    }
+
+    @Test
+    void secondCopyOfOrderInFlightShouldBeTurnedAway() {
+        InFlightOrderRegistry registry = new InFlightOrderRegistry();
+
+        assertTrue(registry.register(ORDER));
+        assertTrue(registry.beginPersist(ORDER));
+        assertFalse(registry.register(ORDER));
+        assertTrue(registry.cancel(ORDER));
+
+        // The copy mustn't have reset the first one's state
+        assertTrue(registry.complete(ORDER));
+        assertTrue(registry.register(ORDER));
+    }
+
+    @Test
+    void orderCancelledWhileWaitingInJournalShouldBeCancelledOnceFlushed() {
+        InFlightOrderRegistry registry = new InFlightOrderRegistry();
+        registry.register(ORDER);
+        assertTrue(registry.beginPersist(ORDER));
+
+        // Appended to the journal: the order stays in flight until the flusher has saved it
+        assertTrue(registry.cancel(ORDER));
+        assertEquals(1, registry.size());
+
+        // The flusher completes it after saving, and applies the cancellation
+        assertTrue(registry.complete(ORDER));
+        assertEquals(0, registry.size());
+    }
+}
@@ -0,0 +1,43 @@
+package com.springboot.learning.kit.unit;
+
+import com.springboot.learning.kit.domain.ItemStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ItemStatusTransitionTest {
+
+    @Test
+    void itemShouldFollowTheDeliveryPath() {
+        assertTrue(ItemStatus.PROCESSING.canTransitionTo(ItemStatus.SHIPPED));
+        assertTrue(ItemStatus.SHIPPED.canTransitionTo(ItemStatus.DELIVERED));
+        assertTrue(ItemStatus.DELIVERED.canTransitionTo(ItemStatus.COMPLETED));
+    }
+
+    @Test
+    void lateOrRepeatedEventsShouldBeRejected() {
+        assertFalse(ItemStatus.DELIVERED.canTransitionTo(ItemStatus.SHIPPED));
+        assertFalse(ItemStatus.SHIPPED.canTransitionTo(ItemStatus.SHIPPED));
+        assertFalse(ItemStatus.SHIPPED.canTransitionTo(ItemStatus.CANCELLED));
+    }
+
+    @Test
+    void finalStatusesShouldHaveNoWayOut() {
+        for (ItemStatus status : ItemStatus.values()) {
+            assertFalse(ItemStatus.COMPLETED.canTransitionTo(status));
+            assertFalse(ItemStatus.REFUNDED.canTransitionTo(status));
+        }
+    }
+
+    @Test
+    void previousStatusesShouldMirrorTransitions() {
+        assertEquals(Set.of(ItemStatus.PENDING, ItemStatus.PROCESSING), ItemStatus.CANCELLED.getPreviousStatuses());
+        for (ItemStatus to : ItemStatus.values()) {
+            for (ItemStatus from : ItemStatus.values()) {
+                assertEquals(from.canTransitionTo(to), to.getPreviousStatuses().contains(from));
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.springboot.learning.kit.unit;
+
+import com.springboot.learning.kit.consumer.ListenerConcurrencyController;
+import com.springboot.learning.kit.consumer.NewOrderConsumer;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.mockito.Mockito.*;
+
+public class ListenerConcurrencyControllerTest {
+
+    private static final String QUEUE = "placement";
+
+    private final RabbitListenerEndpointRegistry listenerRegistry = mock(RabbitListenerEndpointRegistry.class);
+    private final SimpleMessageListenerContainer container = mock(SimpleMessageListenerContainer.class);
+    private final AmqpAdmin amqpAdmin = mock(AmqpAdmin.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Timer commitTimes = meterRegistry.timer("orders.persist");
+    private final ListenerConcurrencyController controller = controller();
+
+    @AfterEach
+    void stopController() {
+        ReflectionTestUtils.invokeMethod(controller, "stop");
+    }
+
+    @Test
+    void backlogShouldGrowConsumersAtMostTwofoldPerCheck() {
+        backlog(5_000);
+
+        adjust();
+        adjust();
+        adjust();
+        adjust();
+
+        verify(container).setConcurrentConsumers(4);
+        verify(container).setConcurrentConsumers(8);
+        verify(container).setConcurrentConsumers(16);
+        verify(container, times(3)).setConcurrentConsumers(anyInt());
+    }
+
+    @Test
+    void slowCommitsShouldShedConsumersOneAtATimeWhateverTheBacklog() {
+        backlog(5_000);
+        adjust();
+        adjust();
+
+        commitTimes.record(Duration.ofMillis(500));
+        adjust();
+        commitTimes.record(Duration.ofMillis(500));
+        adjust();
+
+        verify(container).setConcurrentConsumers(7);
+        verify(container).setConcurrentConsumers(6);
+    }
+
+    @Test
+    void drainedQueueShouldShedConsumersOneAtATime() {
+        backlog(5_000);
+        adjust();
+        backlog(0);
+
+        adjust();
+        adjust();
+        adjust();
+
+        verify(container).setConcurrentConsumers(4);
+        verify(container).setConcurrentConsumers(3);
+        verify(container).setConcurrentConsumers(2);
+        verify(container, times(3)).setConcurrentConsumers(anyInt());
+    }
+
+    @Test
+    void pausedListenerShouldBeLeftAlone() {
+        backlog(5_000);
+        when(container.isRunning()).thenReturn(false);
+
+        adjust();
+
+        verify(container, never()).setConcurrentConsumers(anyInt());
+        verifyNoInteractions(amqpAdmin);
+    }
+
+    /**
+     * A controller between 2 and 16 consumers, adding one per 100 waiting messages, whose own scheduled checks
+     * are too far apart to run during a test.
+     */
+    private ListenerConcurrencyController controller() {
+        when(listenerRegistry.getListenerContainer(NewOrderConsumer.PLACEMENT_LISTENER)).thenReturn(container);
+        when(container.isRunning()).thenReturn(true);
+
+        ListenerConcurrencyController controller = new ListenerConcurrencyController(listenerRegistry, amqpAdmin,
+                meterRegistry);
+        ReflectionTestUtils.setField(controller, "orderPlacementQueue", QUEUE);
+        ReflectionTestUtils.setField(controller, "minConsumers", 2);
+        ReflectionTestUtils.setField(controller, "maxConsumers", 16);
+        ReflectionTestUtils.setField(controller, "checkIntervalMillis", 3_600_000L);
+        ReflectionTestUtils.setField(controller, "backlogPerConsumer", 100);
+        ReflectionTestUtils.setField(controller, "maxCommitLatencyMillis", 100.0);
+        ReflectionTestUtils.invokeMethod(controller, "start");
+        return controller;
+    }
+
+    private void backlog(int messages) {
+        when(amqpAdmin.getQueueInfo(QUEUE)).thenReturn(new QueueInformation(QUEUE, messages, 2));
+    }
+
+    private void adjust() {
+        ReflectionTestUtils.invokeMethod(controller, "adjust");
+    }
+}
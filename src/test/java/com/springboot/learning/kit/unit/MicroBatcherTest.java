@@ -0,0 +1,104 @@
+package com.springboot.learning.kit.unit;
+
+import com.springboot.learning.kit.batch.MicroBatcher;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MicroBatcherTest {
+
+    private static final int BAD_ITEM = 5;
+
+    @Test
+    void failingBatchShouldBeSplitUntilOnlyTheBadItemFails() throws Exception {
+        List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+        MicroBatcher<Integer> batcher = oneBatchOfEight(batch -> {
+            batches.add(List.copyOf(batch));
+            if (batch.contains(BAD_ITEM)) {
+                throw new IllegalArgumentException("Bad item");
+            }
+        });
+
+        List<CompletableFuture<Void>> results = submitEight(batcher);
+        for (int i = 0; i < results.size(); i++) {
+            if (i == BAD_ITEM) {
+                ExecutionException failure = assertThrows(ExecutionException.class,
+                        () -> results.get(BAD_ITEM).get(5, TimeUnit.SECONDS));
+                assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+            } else {
+                assertNull(results.get(i).get(5, TimeUnit.SECONDS));
+            }
+        }
+        batcher.stop();
+
+        assertEquals(List.of(
+                List.of(0, 1, 2, 3, 4, 5, 6, 7),
+                List.of(0, 1, 2, 3),
+                List.of(4, 5, 6, 7),
+                List.of(4, 5),
+                List.of(4),
+                List.of(5),
+                List.of(6, 7)), batches);
+    }
+
+    @Test
+    void retryableFailureShouldFailTheWholeBatchAtOnce() throws Exception {
+        List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+        MicroBatcher<Integer> batcher = oneBatchOfEight(batch -> {
+            batches.add(List.copyOf(batch));
+            throw new TransientDataAccessResourceException("Database unavailable");
+        });
+
+        for (CompletableFuture<Void> result : submitEight(batcher)) {
+            ExecutionException failure = assertThrows(ExecutionException.class,
+                    () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(TransientDataAccessResourceException.class, failure.getCause());
+        }
+        batcher.stop();
+
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    void stoppingShouldFailQueuedAndLaterItems() {
+        MicroBatcher<Integer> batcher = new MicroBatcher<>("test", 8, Duration.ofSeconds(5), 8,
+                batch -> fail("Batch handled without workers"));
+        // No workers, so everything submitted stays queued
+        batcher.start(0);
+        CompletableFuture<Void> queued = batcher.submit(1);
+        assertEquals(1, batcher.getQueueSize());
+
+        batcher.stop();
+
+        assertTrue(queued.isCompletedExceptionally());
+        assertTrue(batcher.submit(2).isCompletedExceptionally());
+        assertEquals(0, batcher.getQueueSize());
+    }
+
+    /**
+     * A batcher with one worker that only closes a batch once it holds eight items.
+     */
+    private static MicroBatcher<Integer> oneBatchOfEight(Consumer<List<Integer>> handler) {
+        MicroBatcher<Integer> batcher = new MicroBatcher<>("test", 8, Duration.ofSeconds(5), 8, handler);
+        batcher.start(1);
+        return batcher;
+    }
+
+    private static List<CompletableFuture<Void>> submitEight(MicroBatcher<Integer> batcher) {
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(batcher.submit(i));
+        }
+        return results;
+    }
+}
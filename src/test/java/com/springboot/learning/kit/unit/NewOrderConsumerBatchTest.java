@@ -0,0 +1,115 @@
+package com.springboot.learning.kit.unit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.Channel;
+import com.springboot.learning.kit.config.JacksonConfig;
+import com.springboot.learning.kit.consumer.NewOrderConsumer;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import com.springboot.learning.kit.routes.RabbitMQRoutes;
+import com.springboot.learning.kit.service.OrderProcessingService;
+import com.springboot.learning.kit.transformer.OrderMessageCodec;
+import com.springboot.learning.kit.transformer.OrderMessageCodec.EncodedOrder;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static com.springboot.learning.kit.config.OrderFixtures.newOrder;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class NewOrderConsumerBatchTest {
+
+    private static final String RETRY_QUEUE = "placement.retry";
+    private static final String DEAD_LETTER_QUEUE = "placement.dlq";
+
+    private final ObjectMapper mapper = new JacksonConfig().objectMapper();
+    private final OrderMessageCodec codec = new OrderMessageCodec(mapper,
+            new JacksonConfig().orderRequestReader(mapper), "json", false, 1024, 64 * 1024);
+    private final OrderProcessingService orderProcessingService = mock(OrderProcessingService.class);
+    private final Channel channel = mock(Channel.class);
+    private final NewOrderConsumer consumer = consumer();
+
+    @Test
+    void placedBatchShouldBeAcknowledgedAtOnce() throws IOException {
+        List<OrderRequest> orders = List.of(newOrder("ONLINE", 1), newOrder("ONLINE", 2), newOrder("OFFLINE", 1));
+        when(orderProcessingService.processNewOrders(orders)).thenReturn(Arrays.asList(null, null, null));
+
+        consumer.processRabbitMQOrderBatch(List.of(message(1, orders.get(0)), message(2, orders.get(1)),
+                message(3, orders.get(2))), channel);
+
+        verify(channel).basicAck(3, true);
+        verify(channel, never()).basicAck(anyLong(), eq(false));
+        verify(channel, never()).basicPublish(any(), any(), any(), any());
+    }
+
+    @Test
+    void eachFailedMessageShouldBeSettledOnItsOwn() throws Exception {
+        OrderRequest placed = newOrder("ONLINE", 1);
+        OrderRequest retried = newOrder("ONLINE", 1);
+        // Only the orders that parsed reach the database
+        when(orderProcessingService.processNewOrders(List.of(placed, retried))).thenReturn(
+                Arrays.asList(null, new TransientDataAccessResourceException("Connection refused")));
+
+        consumer.processRabbitMQOrderBatch(List.of(message(1, placed), unreadable(2), message(3, retried)), channel);
+
+        InOrder settled = inOrder(channel);
+        settled.verify(channel).basicAck(1, false);
+        settled.verify(channel).basicPublish(eq(RabbitMQRoutes.EXCHANGE), eq(DEAD_LETTER_QUEUE), any(), any());
+        settled.verify(channel).waitForConfirmsOrDie(5_000);
+        settled.verify(channel).basicAck(2, false);
+        settled.verify(channel).basicPublish(eq(RabbitMQRoutes.EXCHANGE), eq(RETRY_QUEUE), any(), any());
+        settled.verify(channel).waitForConfirmsOrDie(5_000);
+        settled.verify(channel).basicAck(3, false);
+        verify(channel, never()).basicAck(anyLong(), eq(true));
+    }
+
+    @Test
+    void unconfirmedCopyShouldPutTheRestOfTheBatchBack() throws Exception {
+        OrderRequest placed = newOrder("ONLINE", 1);
+        OrderRequest retried = newOrder("ONLINE", 1);
+        OrderRequest unsettled = newOrder("ONLINE", 1);
+        when(orderProcessingService.processNewOrders(List.of(placed, retried, unsettled))).thenReturn(
+                Arrays.asList(null, new TransientDataAccessResourceException("Connection refused"), null));
+        doThrow(new TimeoutException()).when(channel).waitForConfirmsOrDie(anyLong());
+        when(channel.isOpen()).thenReturn(true);
+
+        assertThrows(IOException.class, () -> consumer.processRabbitMQOrderBatch(
+                List.of(message(1, placed), message(2, retried), message(3, unsettled)), channel));
+
+        verify(channel).basicAck(1, false);
+        verify(channel, never()).basicAck(eq(2L), anyBoolean());
+        verify(channel).basicNack(3, true, true);
+    }
+
+    private NewOrderConsumer consumer() {
+        NewOrderConsumer consumer = new NewOrderConsumer(codec, orderProcessingService);
+        ReflectionTestUtils.setField(consumer, "retryQueue", RETRY_QUEUE);
+        ReflectionTestUtils.setField(consumer, "deadLetterQueue", DEAD_LETTER_QUEUE);
+        ReflectionTestUtils.setField(consumer, "maxRetries", 5);
+        ReflectionTestUtils.setField(consumer, "confirmTimeoutMillis", 5_000L);
+        return consumer;
+    }
+
+    private Message message(long deliveryTag, OrderRequest order) throws IOException {
+        EncodedOrder encoded = codec.encode(order);
+        MessageProperties properties = new MessageProperties();
+        properties.setDeliveryTag(deliveryTag);
+        properties.setContentType(encoded.contentType());
+        return new Message(encoded.body(), properties);
+    }
+
+    private static Message unreadable(long deliveryTag) {
+        MessageProperties properties = new MessageProperties();
+        properties.setDeliveryTag(deliveryTag);
+        return new Message("{\"uuid\":".getBytes(StandardCharsets.UTF_8), properties);
+    }
+}
@@ -0,0 +1,40 @@
+package com.springboot.learning.kit.unit;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.springboot.learning.kit.config.JacksonConfig;
+import com.springboot.learning.kit.config.OrderFixtures;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderDeserializationTest {
+
+    @Test
+    void byteReaderShouldParseSameOrderAsStringMapper() throws IOException {
+        ObjectMapper mapper = new JacksonConfig().objectMapper();
+        byte[] message = mapper.writeValueAsBytes(OrderFixtures.order(3));
+
+        OrderRequest fromString = previousMapper().readValue(new String(message, StandardCharsets.UTF_8),
+                OrderRequest.class);
+        OrderRequest fromBytes = new JacksonConfig().orderRequestReader(mapper).readValue(message);
+
+        assertEquals(fromString, fromBytes);
+        assertEquals(OrderFixtures.order(3), fromBytes);
+    }
+
+    /**
+     * The mapper as configured before messages were parsed from bytes.
+     */
+    private static ObjectMapper previousMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return mapper;
+    }
+}
@@ -0,0 +1,90 @@
+package com.springboot.learning.kit.unit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.learning.kit.config.JacksonConfig;
+import com.springboot.learning.kit.dto.request.OrderRequest;
+import com.springboot.learning.kit.transformer.OrderMessageCodec;
+import com.springboot.learning.kit.transformer.OrderMessageCodec.EncodedOrder;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static com.springboot.learning.kit.config.OrderFixtures.order;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderMessageCodecTest {
+
+    private final ObjectMapper mapper = new JacksonConfig().objectMapper();
+
+    @Test
+    void everyFormatShouldReadBackTheSameOrder() throws IOException {
+        OrderRequest order = order(5);
+        for (String format : List.of("json", "cbor", "smile")) {
+            EncodedOrder encoded = codec(format, false).encode(order);
+
+            assertNull(encoded.contentEncoding());
+            assertEquals(order, codec("json", false).decode(encoded.body(), encoded.contentType(), null), format);
+        }
+    }
+
+    @Test
+    void binaryFormatsShouldBeSmallerThanJson() throws IOException {
+        OrderRequest order = order(50);
+        int json = codec("json", false).encode(order).body().length;
+
+        assertTrue(codec("cbor", false).encode(order).body().length < json);
+        assertTrue(codec("smile", false).encode(order).body().length < json);
+    }
+
+    @Test
+    void onlyBodiesPastTheThresholdShouldBeCompressed() throws IOException {
+        OrderMessageCodec codec = codec("cbor", true);
+        EncodedOrder small = codec.encode(order(1));
+        EncodedOrder large = codec.encode(order(200));
+
+        assertNull(small.contentEncoding());
+        assertEquals(OrderMessageCodec.GZIP, large.contentEncoding());
+        assertEquals(order(200), codec.decode(large.body(), large.contentType(), large.contentEncoding()));
+    }
+
+    @Test
+    void messagesWithoutBinaryContentTypeShouldBeReadAsJson() throws IOException {
+        byte[] json = mapper.writeValueAsBytes(order(2));
+        OrderMessageCodec codec = codec("smile", false);
+
+        assertEquals(order(2), codec.decode(json, null, null));
+        assertEquals(order(2), codec.decode(json, "application/octet-stream", ""));
+        assertEquals(order(2), codec.decode(json, "application/json; charset=UTF-8", null));
+    }
+
+    @Test
+    void unsupportedContentEncodingShouldFail() {
+        assertThrows(IOException.class, () -> codec("json", false).decode(new byte[0], null, "br"));
+    }
+
+    @Test
+    void bodiesInflatingPastTheLimitShouldFail() throws IOException {
+        // An order padded with a megabyte of whitespace, which gzips down to a couple of kilobytes
+        byte[] padded = new byte[1024 * 1024];
+        Arrays.fill(padded, (byte) ' ');
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write('{');
+            gzip.write(padded);
+            gzip.write('}');
+        }
+
+        IOException e = assertThrows(IOException.class,
+                () -> codec("json", false).decode(compressed.toByteArray(), null, OrderMessageCodec.GZIP));
+        assertTrue(e.getMessage().contains("inflates past"), e.getMessage());
+    }
+
+    private OrderMessageCodec codec(String format, boolean compression) {
+        return new OrderMessageCodec(mapper, new JacksonConfig().orderRequestReader(mapper), format, compression, 1024,
+                64 * 1024);
+    }
+}
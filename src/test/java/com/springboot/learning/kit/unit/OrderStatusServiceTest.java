@@ -0,0 +1,122 @@
+package com.springboot.learning.kit.unit;
+
+import com.springboot.learning.kit.dto.projection.OrderStatusRow;
+import com.springboot.learning.kit.dto.response.OrderStatusResponse;
+import com.springboot.learning.kit.repository.OrderItemStatusRepository;
+import com.springboot.learning.kit.repository.OrderStatusRepository;
+import com.springboot.learning.kit.service.OrderStatusService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class OrderStatusServiceTest {
+
+    private static final long ORDER = 42L;
+
+    private final OrderStatusRepository orderStatusRepository = mock(OrderStatusRepository.class);
+    private final OrderStatusService orderStatusService = new OrderStatusService(orderStatusRepository,
+            mock(OrderItemStatusRepository.class), new SimpleMeterRegistry());
+
+    @Test
+    void repeatedLookupsShouldBeServedFromTheCache() {
+        List<OrderStatusRow> processing = List.of(row("PROCESSING"));
+        when(orderStatusRepository.findOrderStatus(ORDER)).thenReturn(processing);
+        startCache();
+
+        assertEquals("PROCESSING", itemStatus(orderStatusService.getOrderStatus(ORDER)));
+        assertEquals("PROCESSING", itemStatus(orderStatusService.getOrderStatus(ORDER)));
+
+        verify(orderStatusRepository, times(1)).findOrderStatus(ORDER);
+    }
+
+    @Test
+    void statusChangeShouldEvictTheCachedStatus() {
+        List<OrderStatusRow> processing = List.of(row("PROCESSING"));
+        List<OrderStatusRow> shipped = List.of(row("SHIPPED"));
+        when(orderStatusRepository.findOrderStatus(ORDER)).thenReturn(processing).thenReturn(shipped);
+        startCache();
+
+        assertEquals("PROCESSING", itemStatus(orderStatusService.getOrderStatus(ORDER)));
+        orderStatusService.evictOrderStatus(ORDER);
+        assertEquals("SHIPPED", itemStatus(orderStatusService.getOrderStatus(ORDER)));
+
+        verify(orderStatusRepository, times(2)).findOrderStatus(ORDER);
+    }
+
+    @Test
+    void missingOrderShouldNotBeCached() {
+        List<OrderStatusRow> processing = List.of(row("PROCESSING"));
+        when(orderStatusRepository.findOrderStatus(ORDER)).thenReturn(List.of()).thenReturn(processing);
+        startCache();
+
+        assertTrue(orderStatusService.getOrderStatus(ORDER).isEmpty());
+        assertEquals("PROCESSING", itemStatus(orderStatusService.getOrderStatus(ORDER)));
+    }
+
+    @Test
+    void concurrentMissesShouldShareOneQuery() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<OrderStatusRow> processing = List.of(row("PROCESSING"));
+        when(orderStatusRepository.findOrderStatus(ORDER)).thenAnswer(invocation -> {
+            loading.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            return processing;
+        });
+        startCache();
+
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Optional<OrderStatusResponse>>> lookups = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                lookups.add(executor.submit(() -> orderStatusService.getOrderStatus(ORDER)));
+            }
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            // Give the other callers time to pile up behind the running load
+            Thread.sleep(200);
+            release.countDown();
+
+            for (Future<Optional<OrderStatusResponse>> lookup : lookups) {
+                assertEquals("PROCESSING", itemStatus(lookup.get(10, TimeUnit.SECONDS)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(orderStatusRepository, times(1)).findOrderStatus(ORDER);
+    }
+
+    private void startCache() {
+        ReflectionTestUtils.setField(orderStatusService, "cacheMaxSize", 100L);
+        ReflectionTestUtils.setField(orderStatusService, "cacheTtlSeconds", 60L);
+        ReflectionTestUtils.invokeMethod(orderStatusService, "initCache");
+    }
+
+    private static String itemStatus(Optional<OrderStatusResponse> status) {
+        assertTrue(status.isPresent());
+        return status.get().getItems().get(0).getStatus();
+    }
+
+    private static OrderStatusRow row(String status) {
+        OrderStatusRow row = mock(OrderStatusRow.class);
+        when(row.getOrderId()).thenReturn(ORDER);
+        when(row.getOrderType()).thenReturn("ONLINE");
+        when(row.getProductId()).thenReturn(1001L);
+        when(row.getQuantity()).thenReturn(1);
+        when(row.getStatus()).thenReturn(status);
+        return row;
+    }
+}
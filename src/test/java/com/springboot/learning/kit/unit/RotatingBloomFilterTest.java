@@ -0,0 +1,33 @@
+package com.springboot.learning.kit.unit;
+
+import com.springboot.learning.kit.cache.RotatingBloomFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RotatingBloomFilterTest {
+
+    private static final int KEYS_PER_GENERATION = 1000;
+
+    @Test
+    void keysShouldBeRememberedForAtLeastOneFullGeneration() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(KEYS_PER_GENERATION, 0.001);
+        LongStream.range(0, 2 * KEYS_PER_GENERATION).forEach(filter::put);
+
+        // The first generation is now the previous one, and the second is full but not yet rotated
+        assertTrue(LongStream.range(0, 2 * KEYS_PER_GENERATION).allMatch(filter::mightContain));
+    }
+
+    @Test
+    void keysShouldBeForgottenOnceTwoGenerationsHaveFollowed() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(KEYS_PER_GENERATION, 0.001);
+        LongStream.range(0, KEYS_PER_GENERATION).forEach(filter::put);
+        LongStream.range(1_000_000, 1_000_000 + 2 * KEYS_PER_GENERATION + 1).forEach(filter::put);
+
+        long remembered = LongStream.range(0, KEYS_PER_GENERATION).filter(filter::mightContain).count();
+        // Only false positives are left, at about 0.1% per generation checked
+        assertTrue(remembered < KEYS_PER_GENERATION / 50, remembered + " keys still reported");
+    }
+}
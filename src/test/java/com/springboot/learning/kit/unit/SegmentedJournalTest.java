@@ -0,0 +1,103 @@
+package com.springboot.learning.kit.unit;
+
+import com.springboot.learning.kit.journal.SegmentedJournal;
+import com.springboot.learning.kit.journal.SegmentedJournal.Entry;
+import com.springboot.learning.kit.journal.SegmentedJournal.FsyncPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SegmentedJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void uncommittedRecordsShouldBeReplayedAfterReopening() throws IOException {
+        try (SegmentedJournal journal = new SegmentedJournal(directory, 256, FsyncPolicy.NEVER)) {
+            for (int i = 0; i < 50; i++) {
+                journal.append(record(i));
+            }
+            List<Entry> entries = journal.poll(20);
+            journal.commit(entries.get(entries.size() - 1));
+
+            // Polled but not committed, so these must come back
+            journal.poll(10);
+            assertEquals(30, journal.getLag());
+        }
+
+        try (SegmentedJournal journal = new SegmentedJournal(directory, 256, FsyncPolicy.NEVER)) {
+            List<Entry> entries = journal.poll(100);
+            assertEquals(30, entries.size());
+            assertEquals(20, entries.get(0).sequence());
+            assertEquals("order-20", text(entries.get(0)));
+            assertEquals("order-49", text(entries.get(29)));
+        }
+    }
+
+    @Test
+    void fullyReadSegmentsShouldBeDeletedOnCommit() throws IOException {
+        try (SegmentedJournal journal = new SegmentedJournal(directory, 64, FsyncPolicy.ALWAYS)) {
+            for (int i = 0; i < 20; i++) {
+                journal.append(record(i));
+            }
+            long segmentsBefore = segmentCount();
+
+            List<Entry> entries = journal.poll(100);
+            journal.commit(entries.get(entries.size() - 1));
+
+            assertEquals(0, journal.getLag());
+            assertEquals(1, segmentCount());
+            assertTrue(segmentsBefore > 1);
+        }
+    }
+
+    @Test
+    void tornRecordShouldBeDroppedOnReopening() throws IOException {
+        try (SegmentedJournal journal = new SegmentedJournal(directory, 1024, FsyncPolicy.ALWAYS)) {
+            journal.append(record(1));
+            journal.append(record(2));
+        }
+
+        // Corrupt the payload of the second record, as if the crash happened while it was being written
+        Path segment = directory.resolve(String.format("%020d.segment", 0));
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(8 + record(1).length + 8);
+            file.write('X');
+        }
+
+        try (SegmentedJournal journal = new SegmentedJournal(directory, 1024, FsyncPolicy.ALWAYS)) {
+            assertEquals(1, journal.getLag());
+            assertEquals(1, journal.append(record(3)));
+
+            List<Entry> entries = journal.poll(10);
+            assertEquals(2, entries.size());
+            assertEquals("order-1", text(entries.get(0)));
+            assertEquals("order-3", text(entries.get(1)));
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".segment")).count();
+        }
+    }
+
+    private static byte[] record(int i) {
+        return ("order-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(Entry entry) {
+        return new String(entry.payload(), StandardCharsets.UTF_8);
+    }
+}
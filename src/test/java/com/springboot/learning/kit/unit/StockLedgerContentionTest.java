@@ -0,0 +1,114 @@
+package com.springboot.learning.kit.unit;
+
+import com.springboot.learning.kit.inventory.StockLedger;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StockLedgerContentionTest {
+
+    private static final int THREADS = 64;
+    private static final long HOT_PRODUCT = 1001L;
+
+    @Test
+    void hotProductShouldNeverBeOversold() throws InterruptedException {
+        StockLedger ledger = new StockLedger(productId -> 150);
+        AtomicInteger reserved = new AtomicInteger();
+
+        runConcurrently(20, i -> {
+            if (ledger.reserve(Map.of(HOT_PRODUCT, 1))) {
+                reserved.incrementAndGet();
+            }
+        });
+
+        assertEquals(150, reserved.get());
+        assertEquals(0, ledger.getAvailable(HOT_PRODUCT));
+        assertEquals(Map.of(HOT_PRODUCT, -150), ledger.drainPending());
+    }
+
+    @Test
+    void orderShouldReserveAllItemsOrNone() {
+        StockLedger ledger = new StockLedger(productId -> productId == HOT_PRODUCT ? 10 : 1);
+
+        assertFalse(ledger.reserve(Map.of(HOT_PRODUCT, 5, 1002L, 2)));
+        assertEquals(10, ledger.getAvailable(HOT_PRODUCT));
+        assertEquals(1, ledger.getAvailable(1002L));
+        assertTrue(ledger.drainPending().isEmpty());
+
+        assertTrue(ledger.reserve(Map.of(HOT_PRODUCT, 5, 1002L, 1)));
+        ledger.release(Map.of(HOT_PRODUCT, 5, 1002L, 1));
+        assertEquals(10, ledger.getAvailable(HOT_PRODUCT));
+        assertTrue(ledger.drainPending().isEmpty());
+    }
+
+    @Test
+    void untrackedProductsShouldAlwaysBeReserved() {
+        StockLedger ledger = new StockLedger(productId -> productId == HOT_PRODUCT ? 1 : StockLedger.UNTRACKED);
+
+        assertTrue(ledger.reserve(Map.of(HOT_PRODUCT, 1, 1002L, 1_000)));
+        assertTrue(ledger.reserve(Map.of(1002L, 1_000)));
+        assertFalse(ledger.reserve(Map.of(HOT_PRODUCT, 1, 1002L, 1)));
+        assertEquals(StockLedger.UNTRACKED, ledger.getAvailable(1002L));
+        assertEquals(Map.of(HOT_PRODUCT, -1), ledger.drainPending());
+    }
+
+    @Test
+    void concurrentOrdersShouldReserveTheHotProductAndTheirOtherItemsTogether() throws InterruptedException {
+        int ordersPerThread = 400;
+        int stock = THREADS * ordersPerThread / 2;
+        StockLedger ledger = new StockLedger(productId -> productId == HOT_PRODUCT ? stock : Integer.MAX_VALUE);
+        AtomicInteger reserved = new AtomicInteger();
+
+        // Every order takes one of the hot product and one of a handful of others; half of them run out of stock
+        runConcurrently(ordersPerThread, i -> {
+            if (ledger.reserve(Map.of(HOT_PRODUCT, 1, 1002L + (i % 4), 1))) {
+                reserved.incrementAndGet();
+            }
+        });
+
+        assertEquals(stock, reserved.get());
+        assertEquals(0, ledger.getAvailable(HOT_PRODUCT));
+        Map<Long, Integer> pending = ledger.drainPending();
+        assertEquals(-stock, pending.get(HOT_PRODUCT));
+        assertEquals(-2L * stock, pending.values().stream().mapToLong(Integer::longValue).sum());
+    }
+
+    private static void runConcurrently(int iterationsPerThread, IterationTask task) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        AtomicInteger failures = new AtomicInteger();
+
+        for (int t = 0; t < THREADS; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < iterationsPerThread; i++) {
+                        task.run(i);
+                    }
+                } catch (Throwable e) {
+                    failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        start.countDown();
+        assertTrue(done.await(60, TimeUnit.SECONDS), "Reserving threads did not finish in time");
+        executor.shutdown();
+        assertEquals(0, failures.get());
+    }
+
+    @FunctionalInterface
+    private interface IterationTask {
+        void run(int iteration);
+    }
+}